@@ -0,0 +1,246 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream
+import org.apache.commons.compress.compressors.gzip.GzipParameters
+
+/**
+ * Helpers of the performance integration tests.
+ * The artifacts to strip are generated by the setup scripts (without network access),
+ * and the wall time and peak RSS of the Maven build of each scenario are recorded
+ * by the setup and verify scripts into a JSON lines file.
+ * The peak RSS is only available on Linux (it is read from /proc).
+ */
+class PerfSupport
+{
+    private static final long SEED = 42
+    /** A non-reproducible date (2024-01-01). */
+    private static final long ENTRY_TIME = 1704067200000L
+    private static final String MONITOR_KEY = "reproducible.perf.monitor."
+    private static final long SAMPLING_PERIOD_MS = 100
+
+    /**
+     * Creates a Spring Boot fat jar.
+     * The nested jars are stored without compression, as required by Spring Boot.
+     */
+    static void createFatJar(File file, int nestedJars, int entriesPerJar, int entrySize)
+    {
+        def random = new Random(SEED)
+        file.parentFile.mkdirs()
+        new ZipArchiveOutputStream(file).withCloseable { zout ->
+            addEntry(zout, "META-INF/MANIFEST.MF", ("Manifest-Version: 1.0\r\nCreated-By: Maven JAR Plugin 3.3.0\r\n"
+                    + "Build-Jdk-Spec: 17\r\nMain-Class: org.springframework.boot.loader.JarLauncher\r\n"
+                    + "Start-Class: io.github.zlika.perf.Application\r\nSpring-Boot-Version: 2.7.18\r\n"
+                    + "Spring-Boot-Classes: BOOT-INF/classes/\r\nSpring-Boot-Lib: BOOT-INF/lib/\r\n\r\n")
+                    .getBytes(StandardCharsets.UTF_8))
+            addEntry(zout, "BOOT-INF/classes/git.properties", ("#Generated by Git-Commit-Id-Plugin\n"
+                    + "git.build.time=2024-01-01T00\\:00\\:00+0100\ngit.build.user.name=perf\n")
+                    .getBytes(StandardCharsets.UTF_8))
+            for (int i = 0; i < entriesPerJar; i++)
+            {
+                addEntry(zout, "BOOT-INF/classes/io/github/zlika/perf/Class${i}.class", content(random, entrySize))
+            }
+            for (int i = 0; i < nestedJars; i++)
+            {
+                def nestedJar = new ByteArrayOutputStream()
+                new ZipArchiveOutputStream(nestedJar).withCloseable { nestedZout ->
+                    addEntry(nestedZout, "META-INF/MANIFEST.MF",
+                            "Manifest-Version: 1.0\r\nBuilt-By: perf\r\n\r\n".getBytes(StandardCharsets.UTF_8))
+                    for (int j = 0; j < entriesPerJar; j++)
+                    {
+                        addEntry(nestedZout, "io/github/zlika/lib${i}/Class${j}.class", content(random, entrySize))
+                    }
+                }
+                def bytes = nestedJar.toByteArray()
+                def crc = new CRC32()
+                crc.update(bytes)
+                def entry = new ZipArchiveEntry("BOOT-INF/lib/lib-${i}.jar")
+                entry.method = ZipArchiveEntry.STORED
+                entry.size = bytes.length
+                entry.crc = crc.value
+                entry.time = ENTRY_TIME
+                zout.putArchiveEntry(entry)
+                zout.write(bytes)
+                zout.closeArchiveEntry()
+            }
+        }
+    }
+
+    /**
+     * Creates a WAR file with many small entries.
+     */
+    static void createWar(File file, int entries, int entrySize)
+    {
+        def random = new Random(SEED)
+        file.parentFile.mkdirs()
+        new ZipArchiveOutputStream(file).withCloseable { zout ->
+            addEntry(zout, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nBuilt-By: perf\r\nBuild-Jdk: 17\r\n\r\n"
+                    .getBytes(StandardCharsets.UTF_8))
+            addEntry(zout, "META-INF/maven/io.github.zlika.it/large-war/pom.properties",
+                    "#Generated by Maven\n#Mon Jan 01 00:00:00 CET 2024\nversion=1.0-SNAPSHOT\n"
+                    .getBytes(StandardCharsets.UTF_8))
+            addEntry(zout, "WEB-INF/web.xml", "<web-app/>\n".getBytes(StandardCharsets.UTF_8))
+            for (int i = 0; i < entries; i++)
+            {
+                addEntry(zout, "WEB-INF/classes/io/github/zlika/perf/p${i % 500}/Class${i}.class",
+                        content(random, entrySize))
+            }
+        }
+    }
+
+    /**
+     * Creates a tar.gz archive of about the given size.
+     * The content is mostly random, so that the compressed size is close to the uncompressed size.
+     */
+    static void createTarGz(File file, long size, int entrySize)
+    {
+        def random = new Random(SEED)
+        def parameters = new GzipParameters()
+        // Fast compression: the generation of the archive is not what is measured
+        parameters.compressionLevel = Deflater.BEST_SPEED
+        file.parentFile.mkdirs()
+        new TarArchiveOutputStream(new GzipCompressorOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)), parameters)).withCloseable { tout ->
+            tout.longFileMode = TarArchiveOutputStream.LONGFILE_POSIX
+            tout.bigNumberMode = TarArchiveOutputStream.BIGNUMBER_POSIX
+            def content = new byte[entrySize]
+            for (long i = 0; i < size / entrySize; i++)
+            {
+                random.nextBytes(content)
+                def entry = new TarArchiveEntry("data/d${i % 100}/file${i}.bin")
+                entry.size = content.length
+                entry.modTime = new Date(ENTRY_TIME)
+                entry.userName = "perf"
+                tout.putArchiveEntry(entry)
+                tout.write(content)
+                tout.closeArchiveEntry()
+            }
+        }
+    }
+
+    /**
+     * Starts measuring the wall time and the peak RSS of the child processes (the Maven build).
+     */
+    static void startMonitor(String scenario)
+    {
+        def peakRssKb = new AtomicLong(-1)
+        def running = new AtomicLong(1)
+        def sampler = new Thread({
+            while (running.get() == 1)
+            {
+                peakRssKb.accumulateAndGet(sampleChildrenPeakRssKb(), { a, b -> Math.max(a, b) })
+                Thread.sleep(SAMPLING_PERIOD_MS)
+            }
+        }, "perf-rss-sampler-" + scenario)
+        sampler.daemon = true
+        System.properties.put(MONITOR_KEY + scenario,
+                [start: System.nanoTime(), peakRssKb: peakRssKb, running: running, sampler: sampler])
+        sampler.start()
+    }
+
+    /**
+     * Stops the measurements started by {@link #startMonitor} and appends them to the results file.
+     */
+    static Map stopMonitor(String scenario, File resultsFile, File artifact)
+    {
+        def monitor = System.properties.remove(MONITOR_KEY + scenario)
+        assert monitor != null : "The monitor of ${scenario} has not been started"
+        def wallTimeMs = (System.nanoTime() - monitor.start) / 1000000 as long
+        monitor.running.set(0)
+        monitor.sampler.join()
+        def result = [scenario: scenario, artifactBytes: artifact.length(), wallTimeMs: wallTimeMs,
+                      peakRssKb: monitor.peakRssKb.get(), javaVersion: System.getProperty("java.version")]
+        resultsFile.parentFile.mkdirs()
+        resultsFile << groovy.json.JsonOutput.toJson(result) + "\n"
+        return result
+    }
+
+    /**
+     * Returns the maximum of the peak RSS of the descendants of this process, or -1 if unknown.
+     */
+    private static long sampleChildrenPeakRssKb()
+    {
+        def proc = new File("/proc")
+        if (!new File(proc, "self/status").exists())
+        {
+            return -1
+        }
+        // Parent of each process (the name of the process may contain spaces and parentheses)
+        def parents = [:]
+        proc.eachDir { dir ->
+            if (dir.name.isLong())
+            {
+                try
+                {
+                    def stat = new File(dir, "stat").text
+                    parents[dir.name] = stat.substring(stat.lastIndexOf(')') + 2).split(" ")[1]
+                }
+                catch (IOException e)
+                {
+                    // The process has ended
+                }
+            }
+        }
+        def descendants = [new File("/proc/self").canonicalFile.name] as Set
+        def found = true
+        while (found)
+        {
+            def children = parents.findAll { pid, ppid -> descendants.contains(ppid) }.keySet()
+            found = descendants.addAll(children)
+        }
+        long peak = -1
+        descendants.each { pid ->
+            try
+            {
+                def line = new File(proc, "${pid}/status").readLines().find { it.startsWith("VmHWM:") }
+                if (line != null)
+                {
+                    peak = Math.max(peak, line.split(/\s+/)[1] as long)
+                }
+            }
+            catch (IOException e)
+            {
+                // The process has ended
+            }
+        }
+        return peak
+    }
+
+    private static byte[] content(Random random, int size)
+    {
+        // Half of the content can be compressed
+        def content = new byte[size]
+        random.nextBytes(content)
+        Arrays.fill(content, 0, size.intdiv(2), (byte) 'a')
+        return content
+    }
+
+    private static void addEntry(ZipArchiveOutputStream zout, String name, byte[] content)
+    {
+        def entry = new ZipArchiveEntry(name)
+        entry.time = ENTRY_TIME
+        zout.putArchiveEntry(entry)
+        zout.write(content)
+        zout.closeArchiveEntry()
+    }
+}
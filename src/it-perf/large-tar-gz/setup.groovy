@@ -0,0 +1,6 @@
+// Generates a tar.gz archive of about 2 GB
+def support = new GroovyClassLoader(getClass().classLoader).parseClass(new File(perfSupportFile))
+def size = Math.max(1L, (long) (2L * 1024 * 1024 * 1024 * (perfScale as double)))
+support.createTarGz(new File(basedir, "target/app.tar.gz"), size, 1024 * 1024)
+support.startMonitor(basedir.name)
+return true
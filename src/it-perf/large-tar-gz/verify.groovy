@@ -0,0 +1,16 @@
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream
+
+def support = new GroovyClassLoader(getClass().classLoader).parseClass(new File(perfSupportFile))
+def artifact = new File(basedir, "target/app.tar.gz")
+def result = support.stopMonitor(basedir.name, new File(perfResultsFile), artifact)
+println "Performance of ${basedir.name}: ${result}"
+
+// Check that the entries of the archive have been stripped
+new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(new FileInputStream(artifact))))
+        .withCloseable { tar ->
+    def entry = tar.nextEntry
+    assert entry.name == "data/d0/file0.bin"
+    assert entry.userName == ""
+}
+return true
@@ -0,0 +1,6 @@
+// Generates a WAR file with 50k entries
+def support = new GroovyClassLoader(getClass().classLoader).parseClass(new File(perfSupportFile))
+def entries = Math.max(1, (int) (50000 * (perfScale as double)))
+support.createWar(new File(basedir, "target/app.war"), entries, 2000)
+support.startMonitor(basedir.name)
+return true
@@ -0,0 +1,15 @@
+import java.nio.charset.StandardCharsets
+import java.util.zip.ZipFile
+
+def support = new GroovyClassLoader(getClass().classLoader).parseClass(new File(perfSupportFile))
+def artifact = new File(basedir, "target/app.war")
+def result = support.stopMonitor(basedir.name, new File(perfResultsFile), artifact)
+println "Performance of ${basedir.name}: ${result}"
+
+// Check that the WAR file has been stripped
+new ZipFile(artifact).withCloseable { zip ->
+    assert !new String(zip.getInputStream(zip.getEntry("META-INF/MANIFEST.MF")).bytes, StandardCharsets.UTF_8)
+            .contains("Built-By")
+    assert zip.entries().nextElement().name == "META-INF/MANIFEST.MF"
+}
+return true
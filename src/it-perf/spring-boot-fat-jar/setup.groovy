@@ -0,0 +1,6 @@
+// Generates a Spring Boot fat jar of about 300 MB with 300 nested jars
+def support = new GroovyClassLoader(getClass().classLoader).parseClass(new File(perfSupportFile))
+def nestedJars = Math.max(1, (int) (300 * (perfScale as double)))
+support.createFatJar(new File(basedir, "target/app.jar"), nestedJars, 50, 40000)
+support.startMonitor(basedir.name)
+return true
@@ -0,0 +1,17 @@
+import java.nio.charset.StandardCharsets
+import java.util.zip.ZipFile
+
+def support = new GroovyClassLoader(getClass().classLoader).parseClass(new File(perfSupportFile))
+def artifact = new File(basedir, "target/app.jar")
+def result = support.stopMonitor(basedir.name, new File(perfResultsFile), artifact)
+println "Performance of ${basedir.name}: ${result}"
+
+// Check that the fat jar and its nested jars have been stripped
+new ZipFile(artifact).withCloseable { zip ->
+    assert !new String(zip.getInputStream(zip.getEntry("META-INF/MANIFEST.MF")).bytes, StandardCharsets.UTF_8)
+            .contains("Created-By")
+    assert !new String(zip.getInputStream(zip.getEntry("BOOT-INF/classes/git.properties")).bytes,
+            StandardCharsets.UTF_8).contains("git.build.time")
+    assert zip.getEntry("BOOT-INF/lib/lib-0.jar").time == zip.getEntry("META-INF/MANIFEST.MF").time
+}
+return true
@@ -0,0 +1,8 @@
+// Does not compile, so that this module fails before stripping the artifacts of the reactor
+public class Broken
+{
+    void broken()
+    {
+        undefined();
+    }
+}
@@ -0,0 +1,5 @@
+String log = new File(basedir, "build.log").text
+assert log.contains("deferred to the end of the reactor")
+// The artifact of module-a is waiting for module-b, which has failed
+assert log.contains("have not been stripped by the strip-jar-aggregate goal, because it has not been executed"
+        + " by the modules [module-b]")
@@ -0,0 +1,18 @@
+import java.util.zip.ZipFile;
+
+String log = new File(basedir, "build.log").text
+assert log.contains("deferred to the end of the reactor")
+assert log.contains("Stripping 2 artifact(s) of the reactor")
+
+// The entries of the artifacts of both modules have the date of the stripped files
+for (String module : ["module-a", "module-b"])
+{
+    File artifact = new File(basedir, module + "/target/" + module + "-1.0-SNAPSHOT.jar")
+    new ZipFile(artifact).withCloseable { zip ->
+        zip.entries().each { entry ->
+            Calendar calendar = Calendar.getInstance()
+            calendar.setTimeInMillis(entry.getTime())
+            assert calendar.get(Calendar.YEAR) == 2000
+        }
+    }
+}
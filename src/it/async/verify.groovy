@@ -0,0 +1,37 @@
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+String log = new File(basedir, "build.log").text
+assert log.contains("Stripping 1 artifact(s) in the background")
+
+boolean isStripped(InputStream jar)
+{
+    ZipInputStream zip = new ZipInputStream(jar)
+    boolean stripped = true
+    for (def entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry())
+    {
+        Calendar calendar = Calendar.getInstance()
+        calendar.setTimeInMillis(entry.getTime())
+        stripped &= calendar.get(Calendar.YEAR) == 2000
+    }
+    return stripped
+}
+
+// The artifacts repackaged by their module (module-b), and by the module depending on them (module-a),
+// are the stripped ones
+new ZipFile(new File(basedir, "module-b/target/async-module-b-1.0-SNAPSHOT-bundle.zip")).withCloseable { zip ->
+    for (String module : ["async-module-a", "async-module-b"])
+    {
+        def jar = zip.getEntry(module + "-1.0-SNAPSHOT.jar")
+        assert jar != null
+        assert isStripped(zip.getInputStream(jar))
+    }
+}
+
+// The installed artifacts are the stripped ones
+for (String module : ["async-module-a", "async-module-b"])
+{
+    File artifact = new File(localRepositoryPath,
+            "io/github/zlika/it/" + module + "/1.0-SNAPSHOT/" + module + "-1.0-SNAPSHOT.jar")
+    assert artifact.withInputStream { isStripped(it) }
+}
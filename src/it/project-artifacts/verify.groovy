@@ -0,0 +1,16 @@
+import java.util.zip.ZipFile;
+
+String log = new File(basedir, "build.log").text
+File dist = new File(basedir, "target/dist")
+List<File> artifacts = [new File(dist, "project-artifacts-1.0-SNAPSHOT.jar"),
+        new File(dist, "project-artifacts-1.0-SNAPSHOT-extra.jar")]
+boolean stripped = artifacts.every { artifact ->
+    log.contains("Stripping " + artifact.getAbsolutePath()) && new ZipFile(artifact).withCloseable { zip ->
+        zip.entries().toList().every { entry ->
+            Calendar calendar = Calendar.getInstance()
+            calendar.setTimeInMillis(entry.getTime())
+            calendar.get(Calendar.YEAR) == 2000
+        }
+    }
+}
+assert stripped
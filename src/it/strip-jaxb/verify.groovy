@@ -21,3 +21,8 @@ content1 = Files.readAllBytes(actual.toPath())
 content2 = Files.readAllBytes(expected.toPath())
 assert content1 == content2
 
+
+// Checks that the normalized files are listed for the next incremental build
+File state = new File(basedir, "target/maven-status/reproducible-build/strip-jaxb.lst")
+assert state.exists()
+assert state.text.contains("jaxb/ObjectFactory.java")
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the stripping of tar, tar.gz, tar.bz2, cpio and ar archives.
+ * Run with "mvn verify -Pjmh -Djmh.benchmarks=ArchiveStripperBenchmark".
+ * Archives with one million entries are benchmarked with "-p entries=1000000".
+ * <p>
+ * Besides the throughput, the {@link DiskUsage} counters give the number of input bytes
+ * and of bytes extracted to the temporary directory per second: their ratio is the temporary disk
+ * usage per byte of input. The allocation per byte of input is given by the "gc.alloc.rate"
+ * metric of the GC profiler divided by the "inputBytes" metric.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ArchiveStripperBenchmark
+{
+    private static final double COMPRESSIBILITY = 0.5;
+    private static final LocalDateTime REPRODUCIBLE_DATE_TIME = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    /** Format of the archive. */
+    @Param({ "tar", "tar.gz", "tar.bz2", "cpio", "ar" })
+    public String format;
+
+    /** Number of entries of the archive. */
+    @Param({ "10", "1000", "100000" })
+    public int entries;
+
+    /** Size of each entry. */
+    @Param({ "128", "16384" })
+    public int entrySize;
+
+    private Path directory;
+    private File archive;
+    private File stripped;
+    private Path tmp;
+    private ArchiveStripper archiveStripper;
+    private Stripper smartArchiveStripper;
+
+    /**
+     * Counters of the amount of data processed.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class DiskUsage
+    {
+        /** Number of bytes of the archives to strip. */
+        public long inputBytes;
+        /** Number of bytes written to the temporary directory. */
+        public long tempDiskBytes;
+
+        /**
+         * Resets the counters at the beginning of each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            inputBytes = 0;
+            tempDiskBytes = 0;
+        }
+    }
+
+    /**
+     * Creates the archive to strip.
+     * @throws IOException On error.
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("archive-benchmark");
+        archive = directory.resolve("benchmark." + format).toFile();
+        stripped = directory.resolve("benchmark-stripped." + format).toFile();
+        tmp = directory.resolve("tmp");
+        SyntheticArchives.createArchive(archive, format, entries, entrySize, COMPRESSIBILITY);
+
+        archiveStripper = format.contains(".") ? new CompressedArchiveStripper(REPRODUCIBLE_DATE_TIME)
+                : new ArchiveStripper(REPRODUCIBLE_DATE_TIME);
+        smartArchiveStripper = new SmartArchiveStripper(REPRODUCIBLE_DATE_TIME);
+    }
+
+    /**
+     * Deletes the files.
+     * @throws IOException On error.
+     */
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        SyntheticArchives.deleteRecursively(directory);
+    }
+
+    /**
+     * Strips the archive with {@link ArchiveStripper} or {@link CompressedArchiveStripper},
+     * and measures the size of the data extracted to the temporary directory.
+     * @param diskUsage the counters.
+     * @throws IOException On error.
+     * @throws ArchiveException On error.
+     * @throws CompressorException On error.
+     */
+    @Benchmark
+    public void archiveStripper(DiskUsage diskUsage) throws IOException, ArchiveException, CompressorException
+    {
+        Files.createDirectory(tmp);
+        try
+        {
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(archive.toPath()));
+                 OutputStream os = new BufferedOutputStream(Files.newOutputStream(stripped.toPath())))
+            {
+                archiveStripper.strip(is, os, tmp);
+            }
+            diskUsage.inputBytes += archive.length();
+            diskUsage.tempDiskBytes += SyntheticArchives.size(tmp);
+        }
+        finally
+        {
+            SyntheticArchives.deleteRecursively(tmp);
+        }
+    }
+
+    /**
+     * Strips the archive with {@link SmartArchiveStripper}, as the strip-jar goal does.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public void smartArchiveStripper() throws IOException
+    {
+        smartArchiveStripper.strip(archive, stripped);
+    }
+}
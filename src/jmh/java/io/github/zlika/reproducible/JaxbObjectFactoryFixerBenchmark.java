@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the sorting of the methods of ObjectFactory files generated by xjc.
+ * Run with "mvn verify -Pjmh -Djmh.benchmarks=JaxbObjectFactoryFixerBenchmark".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JaxbObjectFactoryFixerBenchmark
+{
+    /** Number of methods of the ObjectFactory. */
+    @Param({ "10", "1000", "20000" })
+    public int methods;
+
+    private final JaxbObjectFactoryFixer fixer = new JaxbObjectFactoryFixer(
+            Collections.singletonList(StripJaxbMojo.XjcGenerator.COM_SUN_XML_BIND.getMatchingCommentText()),
+            StandardCharsets.UTF_8);
+    private String content;
+    private Path directory;
+    private File objectFactory;
+    private File fixed;
+
+    /**
+     * Generates the ObjectFactory file.
+     * @throws IOException On error.
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        content = createObjectFactory(methods);
+        directory = Files.createTempDirectory("jaxb-benchmark");
+        objectFactory = directory.resolve("ObjectFactory.java").toFile();
+        fixed = directory.resolve("ObjectFactory-fixed.java").toFile();
+        Files.write(objectFactory.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deletes the files.
+     * @throws IOException On error.
+     */
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        SyntheticArchives.deleteRecursively(directory);
+    }
+
+    /**
+     * Creates an ObjectFactory file, with methods in a random order
+     * (as xjc does when the order of the elements of a HashMap changes).
+     */
+    private static String createObjectFactory(int methodCount)
+    {
+        final List<String> methodList = new ArrayList<>();
+        for (int i = 0; i < methodCount; i++)
+        {
+            final String type = "Type" + i / 2;
+            methodList.add("\n\n    /**\n     * Create an instance of {@link " + type + " }\n     * \n     */\n"
+                    + "    public " + type + " create" + type + (i % 2 == 0 ? "()" : "(" + type + " value)")
+                    + " {\n        return new " + type + "();\n    }");
+        }
+        Collections.shuffle(methodList, new Random(methodCount));
+        return "//\n// This file was generated by the JavaTM Architecture for XML Binding (JAXB) Reference "
+                + "Implementation\n//\n// Generated on: 2024.01.01 at 00:00:00 AM CET\n//\n\n\n"
+                + "package io.github.zlika.benchmark;\n\n@XmlRegistry\npublic class ObjectFactory {\n\n"
+                + "    /**\n     * Create a new ObjectFactory\n     */\n    public ObjectFactory() {\n    }"
+                + String.join("", methodList) + "\n\n}\n";
+    }
+
+    /**
+     * Sorts the methods in memory, as the strip-jaxb goal does.
+     * @return the fixed content.
+     */
+    @Benchmark
+    public String fix()
+    {
+        return fixer.fix(content);
+    }
+
+    /**
+     * Sorts the methods of a file.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public void strip() throws IOException
+    {
+        fixer.strip(objectFactory, fixed);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+/**
+ * Generates the input files of the benchmarks.
+ * The content of the files only depends on the parameters,
+ * so that the results of several runs can be compared.
+ */
+final class SyntheticArchives
+{
+    /** Number of nested jars in each jar, when nesting is used. */
+    static final int NESTED_JARS = 2;
+    /** Directory of the nested jars, as in a Spring Boot fat jar. */
+    static final String NESTED_JARS_DIRECTORY = "BOOT-INF/lib/";
+
+    private static final String MANIFEST = "Manifest-Version: 1.0\r\n"
+            + "Created-By: Apache Maven 3.9.6\r\n"
+            + "Built-By: benchmark\r\n"
+            + "Build-Jdk: 1.8.0_402\r\n"
+            + "Main-Class: io.github.zlika.benchmark.Main\r\n\r\n";
+    private static final String POM_PROPERTIES = "#Generated by Maven\n"
+            + "#Mon Jan 01 00:00:00 CET 2024\n"
+            + "version=1.0\ngroupId=io.github.zlika\nartifactId=benchmark\n";
+    private static final long SEED = 42;
+    /** A non-reproducible date (2024-01-01), as in the artifacts to strip. */
+    private static final long ENTRY_TIME = 1704067200000L;
+    private static final int BENCHMARK_UID = 1000;
+    private static final int REGULAR_FILE_MODE = 0100644;
+
+    private final Random random = new Random(SEED);
+    private final int entrySize;
+    private final double compressibility;
+
+    private SyntheticArchives(int entrySize, double compressibility)
+    {
+        this.entrySize = entrySize;
+        this.compressibility = compressibility;
+    }
+
+    /**
+     * Creates a jar file with a manifest and a pom.properties file (to be processed by the sub-strippers).
+     * When nesting is used, the entries are split between the jar and its nested jars,
+     * so that the total amount of data is proportional to the nesting depth.
+     * @param file the jar file to create.
+     * @param entries the number of entries of the jar (without the nested jars).
+     * @param entrySize the size of each entry.
+     * @param compressibility the ratio of the content of the entries that can be compressed.
+     * @param nestingDepth the depth of the nested jars (0 for no nested jar).
+     * @throws IOException On error.
+     */
+    static void createJar(File file, int entries, int entrySize, double compressibility, int nestingDepth)
+            throws IOException
+    {
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(file))
+        {
+            new SyntheticArchives(entrySize, compressibility).writeJar(zout, entries, nestingDepth);
+        }
+    }
+
+    /**
+     * Creates an archive file.
+     * @param file the archive file to create.
+     * @param format the format of the archive: tar, tar.gz, tar.bz2, cpio or ar.
+     * @param entries the number of entries of the archive.
+     * @param entrySize the size of each entry.
+     * @param compressibility the ratio of the content of the entries that can be compressed.
+     * @throws IOException On error.
+     */
+    static void createArchive(File file, String format, int entries, int entrySize, double compressibility)
+            throws IOException
+    {
+        final String[] extensions = format.split("\\.", 2);
+        final String archiver = extensions[0];
+        final SyntheticArchives generator = new SyntheticArchives(entrySize, compressibility);
+        try (ArchiveOutputStream aout = ArchiveStreamFactory.DEFAULT.createArchiveOutputStream(archiver,
+                compress(new BufferedOutputStream(new FileOutputStream(file)),
+                        extensions.length > 1 ? extensions[1] : null)))
+        {
+            if (aout instanceof TarArchiveOutputStream)
+            {
+                ((TarArchiveOutputStream) aout).setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            }
+            // Entries are not sorted, so that the stripper has to sort them
+            for (int i = entries - 1; i >= 0; i--)
+            {
+                final byte[] content = generator.content();
+                aout.putArchiveEntry(createArchiveEntry(archiver, i, content.length));
+                aout.write(content);
+                aout.closeArchiveEntry();
+            }
+            aout.finish();
+        }
+        catch (ArchiveException | CompressorException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Compresses the output stream with gzip ("gz") or bzip2 ("bz2").
+     */
+    private static OutputStream compress(OutputStream out, String compressor) throws CompressorException
+    {
+        if (compressor == null)
+        {
+            return out;
+        }
+        return CompressorStreamFactory.getSingleton().createCompressorOutputStream(
+                "gz".equals(compressor) ? CompressorStreamFactory.GZIP : CompressorStreamFactory.BZIP2, out);
+    }
+
+    private static ArchiveEntry createArchiveEntry(String archiver, int index, long size)
+    {
+        if (ArchiveStreamFactory.AR.equals(archiver))
+        {
+            // The names of ar entries are limited to 16 characters
+            return new ArArchiveEntry("f" + index, size, BENCHMARK_UID, BENCHMARK_UID, REGULAR_FILE_MODE,
+                    ENTRY_TIME / 1000);
+        }
+        final String name = "d" + index % 100 + "/f" + index + ".bin";
+        if (ArchiveStreamFactory.CPIO.equals(archiver))
+        {
+            final CpioArchiveEntry entry = new CpioArchiveEntry(name, size);
+            entry.setMode(REGULAR_FILE_MODE);
+            entry.setTime(ENTRY_TIME / 1000);
+            entry.setUID(BENCHMARK_UID);
+            return entry;
+        }
+        final TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(size);
+        entry.setModTime(ENTRY_TIME);
+        entry.setUserId(BENCHMARK_UID);
+        entry.setUserName("benchmark");
+        return entry;
+    }
+
+    private byte[] content()
+    {
+        final byte[] content = new byte[entrySize];
+        final int compressibleSize = (int) (entrySize * compressibility);
+        for (int i = 0; i < compressibleSize; i++)
+        {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        final byte[] randomBytes = new byte[entrySize - compressibleSize];
+        random.nextBytes(randomBytes);
+        System.arraycopy(randomBytes, 0, content, compressibleSize, randomBytes.length);
+        return content;
+    }
+
+    private void writeJar(ZipArchiveOutputStream zout, int entries, int nestingDepth) throws IOException
+    {
+        // Entries are not sorted, so that the stripper has to sort them
+        for (int i = entries - 1; i >= 0; i--)
+        {
+            addEntry(zout, "io/github/zlika/benchmark/p" + i % 100 + "/Class" + i + ".class",
+                    content());
+        }
+        addEntry(zout, "META-INF/MANIFEST.MF", MANIFEST.getBytes(StandardCharsets.UTF_8));
+        addEntry(zout, "META-INF/maven/io.github.zlika/benchmark/pom.properties",
+                POM_PROPERTIES.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < (nestingDepth > 0 ? NESTED_JARS : 0); i++)
+        {
+            final ByteArrayOutputStream nestedJar = new ByteArrayOutputStream();
+            try (ZipArchiveOutputStream nestedZout = new ZipArchiveOutputStream(nestedJar))
+            {
+                writeJar(nestedZout, Math.max(1, entries / NESTED_JARS), nestingDepth - 1);
+            }
+            addEntry(zout, NESTED_JARS_DIRECTORY + "lib" + i + ".jar", nestedJar.toByteArray());
+        }
+    }
+
+    private static void addEntry(ZipArchiveOutputStream zout, String name, byte[] content) throws IOException
+    {
+        final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setTime(ENTRY_TIME);
+        zout.putArchiveEntry(entry);
+        zout.write(content);
+        zout.closeArchiveEntry();
+    }
+
+    /**
+     * Deletes a directory and its content.
+     * @param directory the directory to delete.
+     * @throws IOException On error.
+     */
+    static void deleteRecursively(Path directory) throws IOException
+    {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Computes the size of the files of a directory.
+     * @param directory the directory.
+     * @return the size of the files.
+     * @throws IOException On error.
+     */
+    static long size(Path directory) throws IOException
+    {
+        final long[] size = { 0 };
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+                size[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the strippers of the text files found in jars (manifests, properties files...).
+ * The files are stripped in memory, to measure the overhead of the strippers for each file.
+ * Run with "mvn verify -Pjmh -Djmh.benchmarks=TextStripperBenchmark".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TextStripperBenchmark
+{
+    /** Maximum length of the lines of a manifest (including the line ending). */
+    private static final int MANIFEST_LINE_LENGTH = 72;
+
+    /**
+     * Number of lines of the files. For the manifest, this is the number of packages
+     * in the Export-Package header of an OSGi bundle.
+     */
+    @Param({ "10", "1000", "10000" })
+    public int lines;
+
+    private byte[] manifest;
+    private byte[] properties;
+    private byte[] text;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ManifestStripper manifestStripper = new ManifestStripper();
+    private final PropertiesFileStripper propertiesFileStripper = new PropertiesFileStripper("build.time");
+    private final LineNumberStripper lineNumberStripper = new LineNumberStripper(4, LineSeparators.LF);
+
+    /**
+     * Generates the files to strip.
+     */
+    @Setup
+    public void setUp()
+    {
+        manifest = createManifest(lines).getBytes(StandardCharsets.UTF_8);
+
+        final StringBuilder builder = new StringBuilder("#Generated by Maven\n#Mon Jan 01 00:00:00 CET 2024\n");
+        for (int i = 0; i < lines; i++)
+        {
+            builder.append("property").append(i).append("=value").append(i).append('\n');
+        }
+        builder.append("build.time=2024-01-01T00:00:00Z\n");
+        properties = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        builder.setLength(0);
+        for (int i = 0; i < lines; i++)
+        {
+            builder.append("Line ").append(i).append(" of a text file").append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        text = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates the manifest of an OSGi bundle, with a large Export-Package header.
+     */
+    private static String createManifest(int packages)
+    {
+        final StringBuilder exportPackage = new StringBuilder("Export-Package: ");
+        for (int i = 0; i < packages; i++)
+        {
+            exportPackage.append(i == 0 ? "" : ",").append("io.github.zlika.benchmark.p").append(i)
+                .append(";version=\"1.0.0\";uses:=\"io.github.zlika.benchmark.p").append(i + 1).append('"');
+        }
+        final StringBuilder manifest = new StringBuilder("Manifest-Version: 1.0\r\n")
+            .append("Bnd-LastModified: 1704067200000\r\n")
+            .append("Build-Jdk: 1.8.0_402\r\n")
+            .append("Built-By: benchmark\r\n")
+            .append("Bundle-ManifestVersion: 2\r\n")
+            .append("Bundle-SymbolicName: io.github.zlika.benchmark\r\n")
+            .append("Bundle-Version: 1.0.0\r\n")
+            .append("Created-By: Apache Maven Bundle Plugin\r\n");
+        // Long headers are split on several lines, the continuation lines starting with a space
+        manifest.append(exportPackage, 0, Math.min(exportPackage.length(), MANIFEST_LINE_LENGTH - 2)).append("\r\n");
+        for (int i = MANIFEST_LINE_LENGTH - 2; i < exportPackage.length(); i += MANIFEST_LINE_LENGTH - 3)
+        {
+            manifest.append(' ')
+                .append(exportPackage, i, Math.min(exportPackage.length(), i + MANIFEST_LINE_LENGTH - 3))
+                .append("\r\n");
+        }
+        return manifest.append("Tool: Bnd-6.4.0\r\n\r\n").toString();
+    }
+
+    /**
+     * Strips the manifest of an OSGi bundle.
+     * @return the stripped content.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public ByteArrayOutputStream manifestStripper() throws IOException
+    {
+        return strip(manifestStripper, manifest);
+    }
+
+    /**
+     * Strips a properties file.
+     * @return the stripped content.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public ByteArrayOutputStream propertiesFileStripper() throws IOException
+    {
+        return strip(propertiesFileStripper, properties);
+    }
+
+    /**
+     * Fixes the line endings of a text file.
+     * @return the stripped content.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public ByteArrayOutputStream lineEndingsStripper() throws IOException
+    {
+        return strip(LineEndingsStripper.INSTANCE, text);
+    }
+
+    /**
+     * Removes a line of a text file.
+     * @return the stripped content.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public ByteArrayOutputStream lineNumberStripper() throws IOException
+    {
+        return strip(lineNumberStripper, text);
+    }
+
+    private ByteArrayOutputStream strip(StreamStripper stripper, byte[] content) throws IOException
+    {
+        out.reset();
+        stripper.strip(new ByteArrayInputStream(content), out);
+        return out;
+    }
+}
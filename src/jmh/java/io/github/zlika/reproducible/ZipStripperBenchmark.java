@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the stripping of jar files.
+ * Run with "mvn verify -Pjmh -Djmh.benchmarks=ZipStripperBenchmark".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ZipStripperBenchmark
+{
+    /** Number of entries of the jar. */
+    @Param({ "100", "10000" })
+    public int entries;
+
+    /** Size of each entry. */
+    @Param({ "256", "8192" })
+    public int entrySize;
+
+    /** Ratio of the content of the entries that can be compressed. */
+    @Param({ "0.2", "0.9" })
+    public double compressibility;
+
+    /** Depth of the nested jars. */
+    @Param({ "0", "2" })
+    public int nestingDepth;
+
+    private Path directory;
+    private File jar;
+    private File stripped;
+    private Stripper zipStripper;
+    private Stripper defaultZipStripper;
+    private Stripper nestedJarsStripper;
+
+    /**
+     * Creates the jar to strip.
+     * @throws IOException On error.
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("zip-benchmark");
+        jar = directory.resolve("benchmark.jar").toFile();
+        stripped = directory.resolve("benchmark-stripped.jar").toFile();
+        SyntheticArchives.createJar(jar, entries, entrySize, compressibility, nestingDepth);
+
+        zipStripper = ZipStripper.builder().build();
+        defaultZipStripper = new DefaultZipStripper(ZipStripper.builder(), Collections.emptyList());
+        // Same configuration as the strip-jar goal with nestedIncludes
+        nestedJarsStripper = new DefaultZipStripper(
+                ZipStripper.builder().addNestedArchiveStripper(SyntheticArchives.NESTED_JARS_DIRECTORY + ".*\\.jar"),
+                Collections.emptyList());
+    }
+
+    /**
+     * Deletes the files.
+     * @throws IOException On error.
+     */
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        SyntheticArchives.deleteRecursively(directory);
+    }
+
+    /**
+     * Strips the jar without processing the content of its entries.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public void zipStripper() throws IOException
+    {
+        zipStripper.strip(jar, stripped);
+    }
+
+    /**
+     * Strips the jar and the files known to contain non-reproducible data.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public void defaultZipStripper() throws IOException
+    {
+        defaultZipStripper.strip(jar, stripped);
+    }
+
+    /**
+     * Strips the jar and its nested jars.
+     * @throws IOException On error.
+     */
+    @Benchmark
+    public void nestedJars() throws IOException
+    {
+        nestedJarsStripper.strip(jar, stripped);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Artifacts collected by the "strip-jar-aggregate" goal in the modules of a session,
+ * until the last module expected to execute the goal strips them.
+ * This class is thread-safe.
+ */
+final class AggregateReactor
+{
+    /** The modules that have not executed the goal yet, null before the first one. */
+    private Set<MavenProject> remainingModules;
+    private final List<StripJarMojo> mojos = new ArrayList<>();
+    private final List<StripJarMojo.StripTask> tasks = new ArrayList<>();
+    private boolean stripped;
+
+    /**
+     * Registers the artifacts of a module.
+     * @param module the module.
+     * @param expectedModules computes the modules expected to execute the goal, called for the first module.
+     * @param finished tells if a module has finished its build (e.g. it has failed before executing the goal).
+     * @param mojo the execution of the goal, or null if it is skipped.
+     * @param moduleTasks the artifacts of the module.
+     * @return the artifacts to strip now by the caller (with the executions to finish once they are stripped),
+     *     or null if they are deferred to a later module.
+     */
+    synchronized Batch register(MavenProject module, Supplier<Set<MavenProject>> expectedModules,
+            Predicate<MavenProject> finished, StripJarMojo mojo, List<StripJarMojo.StripTask> moduleTasks)
+    {
+        if (mojo != null)
+        {
+            mojos.add(mojo);
+        }
+        tasks.addAll(moduleTasks);
+        if (stripped)
+        {
+            // A module that was not expected, after the stripping of the other modules
+            return drain();
+        }
+        if (remainingModules == null)
+        {
+            remainingModules = expectedModules.get();
+        }
+        remainingModules.remove(module);
+        remainingModules.removeIf(finished);
+        if (!remainingModules.isEmpty())
+        {
+            return null;
+        }
+        stripped = true;
+        return drain();
+    }
+
+    /**
+     * Gets the modules expected to execute the goal that did not do it, while artifacts of the other modules
+     * are waiting for them.
+     * @return the modules (empty if no artifact is waiting).
+     */
+    synchronized List<MavenProject> getMissingModules()
+    {
+        return stripped || tasks.isEmpty() ? Collections.emptyList() : new ArrayList<>(remainingModules);
+    }
+
+    /**
+     * Gets the artifacts waiting for the missing modules.
+     * @return the artifacts.
+     */
+    synchronized List<String> getWaitingArtifacts()
+    {
+        return stripped ? Collections.emptyList()
+                : tasks.stream().map(task -> task.getFile().getAbsolutePath()).collect(Collectors.toList());
+    }
+
+    private Batch drain()
+    {
+        final Batch batch = new Batch(new ArrayList<>(mojos), new ArrayList<>(tasks));
+        mojos.clear();
+        tasks.clear();
+        return batch;
+    }
+
+    /**
+     * Artifacts to strip, with the executions that collected them.
+     */
+    static final class Batch
+    {
+        private final List<StripJarMojo> mojos;
+        private final List<StripJarMojo.StripTask> tasks;
+
+        private Batch(List<StripJarMojo> mojos, List<StripJarMojo.StripTask> tasks)
+        {
+            this.mojos = mojos;
+            this.tasks = tasks;
+        }
+
+        /**
+         * Gets the executions to finish once the artifacts are stripped.
+         * @return the executions.
+         */
+        List<StripJarMojo> getMojos()
+        {
+            return mojos;
+        }
+
+        /**
+         * Gets the artifacts to strip.
+         * @return the artifacts.
+         */
+        List<StripJarMojo.StripTask> getTasks()
+        {
+            return tasks;
+        }
+    }
+}
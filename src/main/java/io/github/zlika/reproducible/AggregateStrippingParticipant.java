@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Fails the build at its end if artifacts collected by the "strip-jar-aggregate" goal have not been stripped,
+ * because some modules expected to execute the goal have not executed it.
+ * Only active when the plugin is declared as an extension.
+ */
+@Named("reproducible-build-aggregate")
+@Singleton
+public final class AggregateStrippingParticipant extends AbstractMavenLifecycleParticipant
+{
+    @Override
+    public void afterSessionEnd(MavenSession session) throws MavenExecutionException
+    {
+        final AggregateReactor reactor = SessionState.of(session).getAggregateReactor();
+        final List<MavenProject> missingModules = reactor.getMissingModules();
+        if (!missingModules.isEmpty())
+        {
+            throw new MavenExecutionException("The artifacts " + reactor.getWaitingArtifacts()
+                    + " have not been stripped by the strip-jar-aggregate goal, because it has not been executed"
+                    + " by the modules " + missingModules.stream().map(MavenProject::getArtifactId)
+                    .collect(Collectors.toList()), session.getRequest().getPom());
+        }
+    }
+}
@@ -15,6 +15,7 @@ package io.github.zlika.reproducible;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -23,11 +24,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
@@ -42,9 +46,14 @@ import org.apache.commons.compress.compressors.CompressorException;
 
 /**
  * Strip archives of file dates and users,groups informations that are not reproducible.
+ * The entries are kept in memory while the {@link MemoryBudget} allows it,
+ * and spilled in a temporary folder otherwise.
  */
 public class ArchiveStripper implements Stripper
 {
+    /** Maximum size of an entry whose content can be kept in memory. */
+    private static final long MAX_IN_MEMORY_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+
     private final long timestamp;
 
     /**
@@ -59,7 +68,7 @@ public class ArchiveStripper implements Stripper
     @Override
     public void strip(File in, File out) throws IOException
     {
-        Path tmp = Files.createTempDirectory("tmp-" + in.getName());
+        Path tmp = TempWorkspace.createTempDirectory("tmp-" + in.getName());
 
         try (InputStream is = new BufferedInputStream(new FileInputStream(in));
              OutputStream os = new BufferedOutputStream(new FileOutputStream(out)))
@@ -72,7 +81,7 @@ public class ArchiveStripper implements Stripper
         }
         finally
         {
-            org.codehaus.plexus.util.FileUtils.deleteDirectory(tmp.toFile());
+            TempWorkspace.deleteDirectory(tmp);
         }
     }
 
@@ -94,60 +103,128 @@ public class ArchiveStripper implements Stripper
     void strip(ArchiveInputStream ain, ArchiveOutputStream aout, Path tmp) throws IOException
     {
         List<ArchiveEntry> sortedNames = new ArrayList<>();
-        ArchiveEntry entry;
-        while ((entry = ain.getNextEntry()) != null)
+        // Contents of the entries kept in memory, the other ones are spilled in the temporary folder
+        Map<ArchiveEntry, byte[]> buffered = new IdentityHashMap<>();
+        final MemoryBudget budget = MemoryBudget.current();
+        try
         {
-            sortedNames.add(entry);
-            File copyTo = new File(tmp.toFile(), entry.getName());
-            zipSlipProtection(copyTo, tmp);
-            if (entry.isDirectory())
+            ArchiveEntry entry;
+            while ((entry = ain.getNextEntry()) != null)
             {
-                FileUtils.mkdirs(copyTo);
+                sortedNames.add(entry);
+                File copyTo = new File(tmp.toFile(), entry.getName());
+                zipSlipProtection(copyTo, tmp);
+                if (entry.isDirectory())
+                {
+                    FileUtils.mkdirs(copyTo);
+                }
+                else
+                {
+                    extract(ain, entry, copyTo, buffered, budget);
+                }
             }
-            else
+
+            sortedNames.sort(Comparator.comparing(ArchiveEntry::getName));
+
+            for (ArchiveEntry sortedEntry : sortedNames)
             {
-                File destParent = copyTo.getParentFile();
-                FileUtils.mkdirs(destParent);
-                Files.copy(ain, copyTo.toPath());
+                byte[] content = buffered.get(sortedEntry);
+                write(aout, sortedEntry, content, new File(tmp.toFile(), sortedEntry.getName()).toPath());
+                if (content != null)
+                {
+                    // Release the memory as soon as possible, for the other threads
+                    buffered.remove(sortedEntry);
+                    budget.release(content.length);
+                }
+                StripReport.recompressedEntry();
             }
         }
+        finally
+        {
+            buffered.values().forEach(content -> budget.release(content.length));
+        }
+    }
 
-        sortedNames.sort(Comparator.comparing(ArchiveEntry::getName));
-
-        for (ArchiveEntry sortedEntry : sortedNames)
+    /**
+     * Extracts the content of an entry, in memory if the memory budget allows it, in a temporary file otherwise.
+     */
+    private static void extract(ArchiveInputStream ain, ArchiveEntry entry, File copyTo,
+            Map<ArchiveEntry, byte[]> buffered, MemoryBudget budget) throws IOException
+    {
+        final long size = entry.getSize();
+        if (size >= 0 && size <= MAX_IN_MEMORY_ENTRY_SIZE && budget.tryReserve(size))
         {
-            File copyFrom = new File(tmp.toFile(), sortedEntry.getName());
-            if (!sortedEntry.isDirectory())
+            try (StripEvents.Event buffering = StripEvents.INSTANCE.buffering(entry.getName(), false))
             {
-                byte[] fileContent = Files.readAllBytes(copyFrom.toPath());
-                if (sortedEntry instanceof TarArchiveEntry)
+                final byte[] content = new byte[(int) size];
+                try
                 {
-                    TarArchiveEntry tarEntry = (TarArchiveEntry) sortedEntry;
-                    tarEntry.setSize(fileContent.length);
+                    new DataInputStream(ain).readFully(content);
                 }
-                else if (sortedEntry instanceof ArArchiveEntry)
+                catch (IOException e)
                 {
-                    ArArchiveEntry arEntry = (ArArchiveEntry) sortedEntry;
-                    sortedEntry = new ArArchiveEntry(arEntry.getName(), fileContent.length, arEntry.getUserId(),
-                            arEntry.getGroupId(), arEntry.getMode(), arEntry.getLastModified());
+                    budget.release(size);
+                    throw e;
                 }
-                else if (sortedEntry instanceof CpioArchiveEntry)
-                {
-                    CpioArchiveEntry cpioEntry = (CpioArchiveEntry) sortedEntry;
-                    cpioEntry.setSize(fileContent.length);
-                }
-                aout.putArchiveEntry(filterEntry(sortedEntry));
-                aout.write(fileContent);
-                aout.closeArchiveEntry();
+                buffered.put(entry, content);
+                buffering.end(size, size);
             }
-            else
+        }
+        else
+        {
+            FileUtils.mkdirs(copyTo.getParentFile());
+            try (StripEvents.Event buffering = StripEvents.INSTANCE.buffering(entry.getName(), true))
             {
-                aout.putArchiveEntry(filterEntry(sortedEntry));
-                aout.closeArchiveEntry();
+                final long copied = CopyBuffers.INSTANCE.copy(ain, copyTo.toPath(), StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+                buffering.end(copied, copied);
+                StripReport.tempDiskBytes(copied);
             }
         }
     }
 
+    /**
+     * Writes an entry, whose content is either in memory or in a temporary file.
+     */
+    private void write(ArchiveOutputStream aout, ArchiveEntry entry, byte[] content, Path copyFrom)
+            throws IOException
+    {
+        if (entry.isDirectory())
+        {
+            aout.putArchiveEntry(filterEntry(entry));
+            aout.closeArchiveEntry();
+            return;
+        }
+        final long size = content != null ? content.length : Files.size(copyFrom);
+        ArchiveEntry sizedEntry = entry;
+        if (entry instanceof TarArchiveEntry)
+        {
+            TarArchiveEntry tarEntry = (TarArchiveEntry) entry;
+            tarEntry.setSize(size);
+        }
+        else if (entry instanceof ArArchiveEntry)
+        {
+            ArArchiveEntry arEntry = (ArArchiveEntry) entry;
+            sizedEntry = new ArArchiveEntry(arEntry.getName(), size, arEntry.getUserId(),
+                    arEntry.getGroupId(), arEntry.getMode(), arEntry.getLastModified());
+        }
+        else if (entry instanceof CpioArchiveEntry)
+        {
+            CpioArchiveEntry cpioEntry = (CpioArchiveEntry) entry;
+            cpioEntry.setSize(size);
+        }
+        aout.putArchiveEntry(filterEntry(sizedEntry));
+        if (content != null)
+        {
+            aout.write(content);
+        }
+        else
+        {
+            CopyBuffers.INSTANCE.copy(copyFrom, aout);
+        }
+        aout.closeArchiveEntry();
+    }
+
     private ArchiveEntry filterEntry(ArchiveEntry entry)
     {
         if (entry instanceof TarArchiveEntry)
@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Finds the files to strip, classified by the stripper they need.
+ */
+final class ArtifactFinder
+{
+    private static final List<String> ZIP_EXT = Arrays.asList("zip", "jar", "war", "ear", "hpi", "adapter");
+    private static final List<String> ARCHIVE_EXT =
+            Arrays.asList(".tar", ".tar.gz", ".tar.bz2", ".tgz", ".cpio", ".rpm", ".ar", ".deb");
+    private static final byte[] ZIP_FILE_HEADER = new byte[] { 0x50, 0x4B, 0x03, 0x04 };
+    private static final byte[] SPRING_BOOT_EXEC_HEADER = new byte[] { 0x23, 0x21, 0x2F, 0x62, 0x69, 0x6E };
+
+    private final Log log;
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final List<File> zipFiles = new ArrayList<>();
+    private final List<File> springBootExecutables = new ArrayList<>();
+    private final List<File> archiveFiles = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param log the logger.
+     * @param includes the filename inclusion patterns.
+     * @param excludes the filename exclusion patterns.
+     */
+    ArtifactFinder(Log log, List<String> includes, List<String> excludes)
+    {
+        this.log = log;
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Adds the files of a directory, classified by their extension and their header.
+     * @param folder the directory.
+     */
+    void addDirectory(File folder)
+    {
+        final PatternFileNameFilter zipFilter = PatternFileNameFilter.of(log, includes, excludes, ZIP_EXT);
+        final PatternFileNameFilter archiveFilter = PatternFileNameFilter.of(log, includes, excludes, ARCHIVE_EXT);
+        final File[] files = folder.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        for (final File file : files)
+        {
+            if (zipFilter.accept(folder, file.getName()) && file.isFile())
+            {
+                final byte[] header = getFileHeader(file, SPRING_BOOT_EXEC_HEADER.length);
+                if (startsWith(header, ZIP_FILE_HEADER))
+                {
+                    zipFiles.add(file);
+                }
+                else if (startsWith(header, SPRING_BOOT_EXEC_HEADER))
+                {
+                    // JAR/WAR/ZIP files repackaged by the spring-boot-maven-plugin plugin
+                    springBootExecutables.add(file);
+                }
+            }
+            if (archiveFilter.accept(folder, file.getName()))
+            {
+                archiveFiles.add(file);
+            }
+        }
+    }
+
+    /**
+     * Adds the artifact of a project and its attached artifacts, classified by the extension of their type:
+     * the other files of the build directory are neither listed nor read.
+     * @param project the project.
+     */
+    void addProjectArtifacts(MavenProject project)
+    {
+        final List<Artifact> artifacts = new ArrayList<>();
+        if (project != null)
+        {
+            artifacts.add(project.getArtifact());
+            artifacts.addAll(project.getAttachedArtifacts());
+        }
+        // The extension is given by the type: the names are only checked against the patterns
+        final PatternFileNameFilter filter = PatternFileNameFilter.of(log, includes, excludes,
+                Collections.singletonList(""));
+        for (final Artifact artifact : artifacts)
+        {
+            final File file = artifact.getFile();
+            if (file == null || !file.isFile() || !filter.accept(file.getParentFile(), file.getName()))
+            {
+                continue;
+            }
+            final String extension = artifact.getArtifactHandler().getExtension().toLowerCase(Locale.ROOT);
+            if (ZIP_EXT.contains(extension))
+            {
+                // The launch script of a Spring Boot executable is not declared by its type
+                if (startsWith(getFileHeader(file, SPRING_BOOT_EXEC_HEADER.length), SPRING_BOOT_EXEC_HEADER))
+                {
+                    springBootExecutables.add(file);
+                }
+                else
+                {
+                    zipFiles.add(file);
+                }
+            }
+            else if (ARCHIVE_EXT.contains("." + extension))
+            {
+                archiveFiles.add(file);
+            }
+            else
+            {
+                log.debug("Artifact " + artifact + " will not be processed: Unsupported type");
+            }
+        }
+    }
+
+    /**
+     * Gets the zip files (JAR/WAR/ZIP...).
+     * @return the files.
+     */
+    List<File> getZipFiles()
+    {
+        return zipFiles;
+    }
+
+    /**
+     * Gets the JAR/WAR/ZIP files repackaged by the spring-boot-maven-plugin plugin.
+     * @return the files.
+     */
+    List<File> getSpringBootExecutables()
+    {
+        return springBootExecutables;
+    }
+
+    /**
+     * Gets the other archives (TAR, CPIO...).
+     * @return the files.
+     */
+    List<File> getArchiveFiles()
+    {
+        return archiveFiles;
+    }
+
+    private static boolean startsWith(byte[] header, byte[] prefix)
+    {
+        return header != null && Arrays.equals(Arrays.copyOf(header, prefix.length), prefix);
+    }
+
+    private static byte[] getFileHeader(final File file, final int length)
+    {
+        final byte[] header = new byte[length];
+        try (FileInputStream is = new FileInputStream(file))
+        {
+            if (is.read(header) < length)
+            {
+                return null;
+            }
+        }
+        catch (final IOException e)
+        {
+            return null;
+        }
+        return header;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Threads stripping the artifacts of a session in the background, while the build goes on.
+ * The stripping of the artifacts of a module must be joined before they are read: this is done by
+ * {@link BackgroundStrippingListener} before the next goals of the module, before the modules depending on it,
+ * and before the installation and deployment of the artifacts (which may be done at the end of the reactor).
+ * It is joined by {@link BackgroundStrippingParticipant} at the end of the build, then the threads are stopped.
+ * Both are only active when the plugin is declared as an extension.
+ * This class is thread-safe.
+ */
+final class BackgroundStripping
+{
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /** The artifacts being stripped, by execution of the plugin. */
+    private final List<Batch> batches = new ArrayList<>();
+    /** The threads, started with the first artifact. */
+    private ExecutorService executor;
+    private volatile boolean enabled;
+
+    /**
+     * Enables or disables the background stripping, depending on whether it is joined at the end of the build.
+     * @param joinedAtSessionEnd true if the stripping is joined at the end of the build.
+     */
+    void setEnabled(boolean joinedAtSessionEnd)
+    {
+        this.enabled = joinedAtSessionEnd;
+    }
+
+    /**
+     * Checks if the background stripping is enabled.
+     * @return true if the stripping is joined at the end of the build.
+     */
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Strips artifacts in the background.
+     * @param mojo the execution of the plugin that found the artifacts, finished once they are stripped.
+     * @param tasks the artifacts to strip.
+     */
+    synchronized void submit(StripJarMojo mojo, List<StripJarMojo.StripTask> tasks)
+    {
+        if (executor == null)
+        {
+            // Daemon threads, so that a failed build is not blocked by the stripping
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable ->
+            {
+                final Thread thread = new Thread(runnable, "reproducible-strip-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        final List<Future<Void>> futures = new ArrayList<>();
+        for (final StripJarMojo.StripTask task : tasks)
+        {
+            futures.add(executor.submit(() ->
+            {
+                task.stripInWorkspace();
+                return null;
+            }));
+        }
+        batches.add(new Batch(mojo, futures));
+    }
+
+    /**
+     * Waits until all the artifacts submitted so far are stripped.
+     * @throws MojoExecutionException if an artifact cannot be stripped.
+     */
+    void join() throws MojoExecutionException
+    {
+        join(batch -> true);
+    }
+
+    /**
+     * Waits until the artifacts of some modules submitted so far are stripped.
+     * @param modules the modules.
+     * @throws MojoExecutionException if an artifact cannot be stripped.
+     */
+    void join(Collection<MavenProject> modules) throws MojoExecutionException
+    {
+        join(batch -> modules.contains(batch.mojo.getProject()));
+    }
+
+    /**
+     * Waits until all the artifacts are stripped, then stops the threads.
+     * @throws MojoExecutionException if an artifact cannot be stripped.
+     */
+    void close() throws MojoExecutionException
+    {
+        try
+        {
+            join();
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                enabled = false;
+                if (executor != null)
+                {
+                    executor.shutdownNow();
+                    executor = null;
+                }
+            }
+        }
+    }
+
+    private void join(Predicate<Batch> filter) throws MojoExecutionException
+    {
+        final List<Batch> pending = new ArrayList<>();
+        synchronized (this)
+        {
+            batches.stream().filter(filter).forEach(pending::add);
+        }
+        MojoExecutionException failure = null;
+        for (final Batch batch : pending)
+        {
+            for (final Future<Void> future : batch.futures)
+            {
+                final MojoExecutionException exception = await(future);
+                if (failure == null)
+                {
+                    failure = exception;
+                }
+            }
+            // The batches joined concurrently by several threads are only finished once
+            final boolean removed;
+            synchronized (this)
+            {
+                removed = batches.remove(batch);
+            }
+            if (removed)
+            {
+                batch.mojo.finish();
+            }
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    private static MojoExecutionException await(Future<Void> future) throws MojoExecutionException
+    {
+        try
+        {
+            future.get();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            return e.getCause() instanceof MojoExecutionException ? (MojoExecutionException) e.getCause()
+                    : new MojoExecutionException("Error stripping the artifacts", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while stripping the artifacts", e);
+        }
+    }
+
+    /**
+     * Artifacts found by an execution of the plugin.
+     */
+    private static final class Batch
+    {
+        private final StripJarMojo mojo;
+        private final List<Future<Void>> futures;
+
+        private Batch(StripJarMojo mojo, List<Future<Void>> futures)
+        {
+            this.mojo = mojo;
+            this.futures = futures;
+        }
+    }
+}
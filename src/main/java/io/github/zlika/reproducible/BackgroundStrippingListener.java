@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.execution.MojoExecutionEvent;
+import org.apache.maven.execution.MojoExecutionListener;
+import org.apache.maven.execution.ProjectExecutionEvent;
+import org.apache.maven.execution.ProjectExecutionListener;
+import org.apache.maven.lifecycle.LifecycleExecutionException;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Waits for the background stripping before the artifacts may be read, so that the original artifacts
+ * are never used: before the next goals of a module (e.g. integration tests, signature, repackaging),
+ * before the build of the modules depending on it (e.g. a war or an uber jar containing its jar),
+ * and before the installation or the deployment, which may be done for all the modules at the end of the reactor.
+ * Only active when the plugin is declared as an extension.
+ */
+@Named("reproducible-build")
+@Singleton
+public final class BackgroundStrippingListener implements MojoExecutionListener, ProjectExecutionListener
+{
+    /** The plugins reading the artifacts of all the modules. */
+    private static final List<String> PUBLISHING_PLUGINS = Arrays.asList("maven-install-plugin",
+            "maven-deploy-plugin");
+
+    @Override
+    public void beforeMojoExecution(MojoExecutionEvent event) throws MojoExecutionException
+    {
+        final BackgroundStripping stripping = SessionState.of(event.getSession()).getBackgroundStripping();
+        if (PUBLISHING_PLUGINS.contains(event.getExecution().getArtifactId()))
+        {
+            stripping.join();
+        }
+        else
+        {
+            stripping.join(Collections.singletonList(event.getProject()));
+        }
+    }
+
+    @Override
+    public void afterMojoExecutionSuccess(MojoExecutionEvent event)
+    {
+        // Nothing to do
+    }
+
+    @Override
+    public void afterExecutionFailure(MojoExecutionEvent event)
+    {
+        // Nothing to do
+    }
+
+    @Override
+    public void beforeProjectExecution(ProjectExecutionEvent event) throws LifecycleExecutionException
+    {
+        try
+        {
+            SessionState.of(event.getSession()).getBackgroundStripping().join(
+                    event.getSession().getProjectDependencyGraph().getUpstreamProjects(event.getProject(), true));
+        }
+        catch (MojoExecutionException e)
+        {
+            throw new LifecycleExecutionException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void beforeProjectLifecycleExecution(ProjectExecutionEvent event)
+    {
+        // Nothing to do
+    }
+
+    @Override
+    public void afterProjectExecutionSuccess(ProjectExecutionEvent event)
+    {
+        // Nothing to do
+    }
+
+    @Override
+    public void afterProjectExecutionFailure(ProjectExecutionEvent event)
+    {
+        // Nothing to do
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Enables the background stripping at the beginning of the build, and waits for it at the end of the build,
+ * failing the build if an artifact cannot be stripped. The threads stripping the artifacts are then stopped.
+ * Only active when the plugin is declared as an extension.
+ */
+@Named("reproducible-build")
+@Singleton
+public final class BackgroundStrippingParticipant extends AbstractMavenLifecycleParticipant
+{
+    @Override
+    public void afterProjectsRead(MavenSession session)
+    {
+        SessionState.of(session).getBackgroundStripping().setEnabled(true);
+    }
+
+    @Override
+    public void afterSessionEnd(MavenSession session) throws MavenExecutionException
+    {
+        try
+        {
+            SessionState.of(session).getBackgroundStripping().close();
+        }
+        catch (MojoExecutionException e)
+        {
+            throw new MavenExecutionException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Stripper reusing the files stripped previously (by this build or by another one), if available
+ * in a local {@link StripCache} or in a {@link RemoteStripCache}.
+ * The local cache is looked up first, and it is filled with the files downloaded from the remote cache.
+ * This class implements the Design Pattern "Decorator".
+ */
+final class CachingStripper implements Stripper
+{
+    private final StripCache cache;
+    private final RemoteStripCache remoteCache;
+    private final String fingerprint;
+    private final Stripper stripper;
+
+    /**
+     * Constructor.
+     * @param cache the local cache (may be null).
+     * @param remoteCache the remote cache (may be null).
+     * @param fingerprint the fingerprint of the configuration of the stripper:
+     *     all the parameters that have an effect on the stripped files.
+     * @param stripper the stripper to use when the stripped file is not in the caches.
+     */
+    CachingStripper(StripCache cache, RemoteStripCache remoteCache, String fingerprint, Stripper stripper)
+    {
+        this.cache = cache;
+        this.remoteCache = remoteCache;
+        this.fingerprint = fingerprint;
+        this.stripper = stripper;
+    }
+
+    /**
+     * Gets the stripper used when the stripped file is not in the cache.
+     * @return the stripper.
+     */
+    Stripper getStripper()
+    {
+        return stripper;
+    }
+
+    @Override
+    public void strip(File in, File out) throws IOException
+    {
+        final String key;
+        final boolean hit;
+        // Hashing and copying the files are disk-heavy tasks
+        final ConcurrencyGovernor governor = ConcurrencyGovernor.current();
+        final ConcurrencyGovernor.Permit fetchPermit = governor.io();
+        try
+        {
+            // The extension of the file has an effect on the stripping (e.g. file attributes of jars)
+            key = StripCache.key(in, String.join("|", fingerprint,
+                    stripper.getClass().getName(), FileUtils.getFileExtension(in)));
+            hit = fetch(key, out);
+        }
+        finally
+        {
+            fetchPermit.close();
+        }
+        if (hit)
+        {
+            StripStatistics.INSTANCE.cacheHit();
+        }
+        else
+        {
+            StripStatistics.INSTANCE.cacheMiss();
+            stripper.strip(in, out);
+            final ConcurrencyGovernor.Permit putPermit = governor.io();
+            try
+            {
+                putLocal(key, out);
+                if (remoteCache != null)
+                {
+                    remoteCache.put(key, out);
+                }
+            }
+            finally
+            {
+                putPermit.close();
+            }
+        }
+    }
+
+    private boolean fetch(String key, File out) throws IOException
+    {
+        if (cache != null && cache.get(key, out))
+        {
+            return true;
+        }
+        if (remoteCache != null && remoteCache.get(key, out))
+        {
+            putLocal(key, out);
+            return true;
+        }
+        return false;
+    }
+
+    private void putLocal(String key, File file) throws IOException
+    {
+        if (cache != null)
+        {
+            cache.put(key, file);
+        }
+    }
+}
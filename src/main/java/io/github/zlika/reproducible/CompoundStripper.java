@@ -14,55 +14,347 @@
 
 package io.github.zlika.reproducible;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A stripper that runs several strippers one after the others,
  * where the input of one stripper is the output of the previous one.
  * This class implements the Design Pattern "Decorator".
+ * When all the strippers can process streams, the stages are pipelined:
+ * they are connected by in-memory buffers, or by pipes between threads for large inputs
+ * (or when the {@link MemoryBudget} is exhausted), so that the data is read once and written once.
+ * Otherwise (or when the {@link ConcurrencyGovernor} has no CPU permits for the threads of the pipes),
+ * each stage writes its result in a temporary file.
  */
-final class CompoundStripper implements Stripper
+final class CompoundStripper implements StreamStripper
 {
+    /** Size above which the stages are connected by pipes instead of in-memory buffers. */
+    private static final int DEFAULT_IN_MEMORY_THRESHOLD = 16 * 1024 * 1024;
+    private static final int PIPE_SIZE = 64 * 1024;
+
     private final Stripper[] strippers;
-    
+    private final int inMemoryThreshold;
+    private final boolean pipelined;
+
     /**
      * Constructs a compound stripper from a list of strippers.
      * @param strippers the list of strippers.
      */
     public CompoundStripper(Stripper... strippers)
+    {
+        this(DEFAULT_IN_MEMORY_THRESHOLD, strippers);
+    }
+
+    /**
+     * Constructs a compound stripper from a list of strippers.
+     * @param inMemoryThreshold size (in bytes) above which the stages are connected by pipes.
+     * @param strippers the list of strippers.
+     */
+    CompoundStripper(int inMemoryThreshold, Stripper... strippers)
     {
         this.strippers = strippers;
+        this.inMemoryThreshold = inMemoryThreshold;
+        this.pipelined = strippers.length > 0
+                && Arrays.stream(strippers).allMatch(s -> s instanceof StreamStripper);
     }
-    
+
     @Override
     public void strip(File in, File out) throws IOException
+    {
+        if (!pipelined)
+        {
+            stripWithTempFiles(in, out);
+            return;
+        }
+        try (InputStream is = new BufferedInputStream(new FileInputStream(in));
+             OutputStream os = new BufferedOutputStream(new FileOutputStream(out)))
+        {
+            stripPipelined(is, in.length(), os);
+        }
+    }
+
+    @Override
+    public void strip(InputStream in, OutputStream out) throws IOException
+    {
+        if (!pipelined)
+        {
+            stripStreamWithTempFiles(in, out);
+            return;
+        }
+        // Buffer the beginning of the input to find out if it is small enough to be processed in memory
+        final Buffer head = new Buffer();
+        final byte[] chunk = CopyBuffers.INSTANCE.acquire();
+        try
+        {
+            int read;
+            while (head.size() <= inMemoryThreshold && (read = in.read(chunk)) != -1)
+            {
+                head.write(chunk, 0, read);
+            }
+        }
+        finally
+        {
+            CopyBuffers.INSTANCE.release(chunk);
+        }
+        stripPipelined(head.size() <= inMemoryThreshold ? head.toInputStream()
+                : new SequenceInputStream(head.toInputStream(), in), head.size(), out);
+    }
+
+    /**
+     * Connects the stages by in-memory buffers if the input is small enough
+     * and if the memory budget allows it, by pipes otherwise.
+     * @param size the size of the input, or a lower bound if it does not fit in memory.
+     */
+    private void stripPipelined(InputStream in, long size, OutputStream out) throws IOException
+    {
+        // The input and the output of each stage are held in memory
+        final long reservation = size * strippers.length;
+        final MemoryBudget budget = MemoryBudget.current();
+        if (size <= inMemoryThreshold && budget.tryReserve(reservation))
+        {
+            try
+            {
+                stripInMemory(in, out);
+            }
+            finally
+            {
+                budget.release(reservation);
+            }
+        }
+        else
+        {
+            // The stages run at the same time: the helper threads need CPU permits,
+            // otherwise the stages run one after the other in this thread
+            final ConcurrencyGovernor governor = ConcurrencyGovernor.current();
+            final ConcurrencyGovernor.Permit permit = governor.tryCpu(strippers.length - 1);
+            try
+            {
+                if (permit.getCount() == strippers.length - 1)
+                {
+                    stripWithPipes(in, out, governor);
+                }
+                else
+                {
+                    stripStreamWithTempFiles(in, out);
+                }
+            }
+            finally
+            {
+                permit.close();
+            }
+        }
+    }
+
+    private void stripInMemory(InputStream in, OutputStream out) throws IOException
+    {
+        InputStream currentIn = in;
+        for (int i = 0; i < strippers.length - 1; i++)
+        {
+            final Buffer buffer = new Buffer();
+            try (StripEvents.Event buffering = StripEvents.INSTANCE.buffering(stageName(i), false))
+            {
+                ((StreamStripper) strippers[i]).strip(currentIn, buffer);
+                buffering.end(0, buffer.size());
+            }
+            currentIn = buffer.toInputStream();
+        }
+        ((StreamStripper) strippers[strippers.length - 1]).strip(currentIn, out);
+        out.flush();
+    }
+
+    private void stripWithPipes(InputStream in, OutputStream out, ConcurrencyGovernor governor) throws IOException
+    {
+        final ExecutorService executor = governor.getExecutor();
+        // The first failure is the cause of the failures of the other stages (e.g. a truncated input
+        // after the failure of the previous stage, or a closed pipe after the failure of the next stage)
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        final List<Throwable> failures = new ArrayList<>();
+        final List<Future<Void>> stages = new ArrayList<>();
+        InputStream currentIn = in;
+        try
+        {
+            for (int i = 0; i < strippers.length - 1; i++)
+            {
+                final PipedInputStream pipeIn = new PipedInputStream(PIPE_SIZE);
+                final PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+                stages.add(executor.submit(governor.bound(MemoryBudget.current().bound(
+                        stage((StreamStripper) strippers[i], currentIn, pipeOut, firstFailure)))));
+                currentIn = pipeIn;
+            }
+            // The last stage runs in the calling thread
+            strip((StreamStripper) strippers[strippers.length - 1], currentIn, out, firstFailure);
+            out.flush();
+        }
+        catch (IOException | UncheckedIOException e)
+        {
+            failures.add(e);
+        }
+        finally
+        {
+            closePipe(currentIn);
+        }
+        for (Future<Void> stage : stages)
+        {
+            try
+            {
+                stage.get();
+            }
+            catch (ExecutionException e)
+            {
+                failures.add(e.getCause());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                // The helper threads are shared: the stages must not go on after the pipeline
+                stages.forEach(s -> s.cancel(true));
+                throw new IOException(e);
+            }
+        }
+        if (!failures.isEmpty())
+        {
+            final Throwable cause = firstFailure.get() != null ? firstFailure.get() : failures.get(0);
+            final IOException failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            failures.stream().filter(f -> f != cause).forEach(failure::addSuppressed);
+            throw failure;
+        }
+    }
+
+    private static Callable<Void> stage(StreamStripper stripper, InputStream in, OutputStream out,
+            AtomicReference<Throwable> firstFailure)
+    {
+        return () ->
+        {
+            // Closing the pipes signals the end of the data to the next stage
+            // and unblocks the previous stage in case of error
+            try (OutputStream os = out)
+            {
+                strip(stripper, in, os, firstFailure);
+            }
+            finally
+            {
+                closePipe(in);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Runs a stage, recording its failure if it is the first one of the pipeline
+     * (before the pipes are closed, which makes the other stages fail).
+     */
+    private static void strip(StreamStripper stripper, InputStream in, OutputStream out,
+            AtomicReference<Throwable> firstFailure) throws IOException
+    {
+        try
+        {
+            stripper.strip(in, out);
+        }
+        catch (IOException | UncheckedIOException e)
+        {
+            firstFailure.compareAndSet(null, e);
+            throw e;
+        }
+    }
+
+    private static void closePipe(InputStream in) throws IOException
+    {
+        // The input stream of the whole pipeline belongs to the caller
+        if (in instanceof PipedInputStream)
+        {
+            in.close();
+        }
+    }
+
+    private void stripStreamWithTempFiles(InputStream in, OutputStream out) throws IOException
+    {
+        final File tmpIn = TempWorkspace.createTempFile(null, null);
+        final File tmpOut = TempWorkspace.createTempFile(null, null);
+        try
+        {
+            try (StripEvents.Event buffering = StripEvents.INSTANCE.buffering("input", true))
+            {
+                final long size = CopyBuffers.INSTANCE.copy(in, tmpIn.toPath());
+                buffering.end(size, size);
+            }
+            StripReport.tempFile(tmpIn);
+            stripWithTempFiles(tmpIn, tmpOut);
+            StripReport.tempFile(tmpOut);
+            CopyBuffers.INSTANCE.copy(tmpOut.toPath(), out);
+        }
+        finally
+        {
+            TempWorkspace.delete(tmpIn);
+            TempWorkspace.delete(tmpOut);
+        }
+    }
+
+    private void stripWithTempFiles(File in, File out) throws IOException
     {
         final List<File> tmpFiles = new ArrayList<>();
         File currentIn = in;
         try
         {
-            for (Stripper stripper : strippers)
+            for (int i = 0; i < strippers.length; i++)
             {
-                final File tmp = Files.createTempFile(null, null).toFile();
-                tmp.deleteOnExit();
+                final File tmp = TempWorkspace.createTempFile(null, null);
                 tmpFiles.add(tmp);
-                stripper.strip(currentIn, tmp);
+                try (StripEvents.Event buffering = StripEvents.INSTANCE.buffering(stageName(i), true))
+                {
+                    strippers[i].strip(currentIn, tmp);
+                    buffering.end(currentIn.length(), tmp.length());
+                }
+                StripReport.tempFile(tmp);
                 currentIn = tmp;
             }
-            Files.copy(currentIn.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            CopyBuffers.INSTANCE.copy(currentIn.toPath(), 0, out.toPath());
         }
         finally
         {
             for (File file : tmpFiles)
             {
-                Files.delete(file.toPath());
+                TempWorkspace.delete(file);
             }
         }
     }
 
+    /**
+     * Name of the output of a stage, for the events.
+     */
+    private String stageName(int stage)
+    {
+        return "stage " + (stage + 1) + " (" + strippers[stage].getClass().getSimpleName() + ")";
+    }
+
+    /**
+     * In-memory buffer whose content can be read back without being copied.
+     */
+    private static final class Buffer extends ByteArrayOutputStream
+    {
+        InputStream toInputStream()
+        {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
 }
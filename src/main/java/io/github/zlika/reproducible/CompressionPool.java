@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Per-thread pool of the zlib objects (raw {@link Deflater} and {@link Inflater}, as used in the zip archives)
+ * and of their buffers.
+ * The zlib objects hold native memory, which is only freed when they are ended or garbage collected:
+ * reusing them for all the entries and nested archives stripped by a thread avoids the churn of native memory.
+ * The objects are reset when they are released, so the compressed data is the same as with new objects.
+ * The pool of a thread holds several objects of each kind, because the nested archives may be processed while
+ * an object is in use.
+ */
+final class CompressionPool
+{
+    /** Size of the buffers. */
+    static final int BUFFER_SIZE = 64 * 1024;
+    /** Maximum number of objects of each kind kept by a thread. */
+    private static final int MAX_POOLED = 4;
+    private static final ThreadLocal<CompressionPool> CURRENT = ThreadLocal.withInitial(CompressionPool::new);
+
+    private final Deque<Deflater> deflaters = new ArrayDeque<>();
+    private final Deque<Inflater> inflaters = new ArrayDeque<>();
+    private final Deque<byte[]> buffers = new ArrayDeque<>();
+
+    private CompressionPool()
+    {
+    }
+
+    /**
+     * Gets a raw deflater (default compression level, no zlib header) of the current thread.
+     * @return the deflater, to be released once the data is compressed.
+     */
+    static Deflater acquireDeflater()
+    {
+        final Deflater deflater = CURRENT.get().deflaters.pollFirst();
+        return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Resets a deflater and gives it back to the pool of the current thread.
+     * @param deflater the deflater, which must not be used anymore by the caller.
+     */
+    static void release(Deflater deflater)
+    {
+        final Deque<Deflater> pool = CURRENT.get().deflaters;
+        if (pool.size() < MAX_POOLED)
+        {
+            deflater.reset();
+            pool.addFirst(deflater);
+        }
+        else
+        {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Gets a raw inflater (no zlib header) of the current thread.
+     * @return the inflater, to be released once the data is decompressed.
+     */
+    static Inflater acquireInflater()
+    {
+        final Inflater inflater = CURRENT.get().inflaters.pollFirst();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    /**
+     * Resets an inflater and gives it back to the pool of the current thread.
+     * @param inflater the inflater, which must not be used anymore by the caller.
+     */
+    static void release(Inflater inflater)
+    {
+        final Deque<Inflater> pool = CURRENT.get().inflaters;
+        if (pool.size() < MAX_POOLED)
+        {
+            inflater.reset();
+            pool.addFirst(inflater);
+        }
+        else
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Gets a buffer of {@link #BUFFER_SIZE} bytes of the current thread.
+     * @return the buffer (with an undefined content), to be released once it is no longer used.
+     */
+    static byte[] acquireBuffer()
+    {
+        final byte[] buffer = CURRENT.get().buffers.pollFirst();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Gives a buffer back to the pool of the current thread.
+     * @param buffer the buffer, which must not be used anymore by the caller.
+     */
+    static void release(byte[] buffer)
+    {
+        final Deque<byte[]> pool = CURRENT.get().buffers;
+        if (pool.size() < MAX_POOLED)
+        {
+            pool.addFirst(buffer);
+        }
+    }
+
+    /**
+     * Decompresses raw deflated data with a pooled inflater and a pooled buffer,
+     * which are released when the stream is closed.
+     * @param raw the deflated data.
+     * @return the decompressed data, to be closed by the same thread.
+     */
+    static InputStream inflate(InputStream raw)
+    {
+        return new PooledInflaterInputStream(raw);
+    }
+
+    /**
+     * Stream decompressing deflated data with the objects of the pool.
+     */
+    private static final class PooledInflaterInputStream extends InflaterInputStream
+    {
+        private boolean released;
+
+        private PooledInflaterInputStream(InputStream raw)
+        {
+            // A raw inflater may need an extra byte after the deflated data (cf. java.util.zip.ZipFile)
+            super(new SequenceInputStream(raw, new ByteArrayInputStream(new byte[1])), acquireInflater(), 1);
+            buf = acquireBuffer();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                if (!released)
+                {
+                    released = true;
+                    CompressionPool.release(inf);
+                    CompressionPool.release(buf);
+                }
+            }
+        }
+    }
+}
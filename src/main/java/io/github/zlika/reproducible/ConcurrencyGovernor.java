@@ -0,0 +1,268 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of threads stripping artifacts (CPU-heavy: decompression, compression...)
+ * and the number of disk-heavy tasks (reading and writing the caches of the stripped files...),
+ * so that the machine is not oversubscribed when several modules are stripped at the same time
+ * (parallel build, background stripping, aggregated stripping).
+ * The permits are shared by all the executions of the plugin in a session (see {@link SessionState}),
+ * with the limits set by the first one.
+ * The governor of the execution is bound to the threads doing its work, so that the strippers use it.
+ * A thread holding a CPU permit may wait for an I/O permit, but not the other way around.
+ * The governor also provides the helper threads of the stripping (e.g. the stages of a pipeline),
+ * which are reused from one task to the next one. The helper threads must hold CPU permits too: as they
+ * are requested by threads already holding a permit, they are only acquired if they are available.
+ * This class is thread-safe.
+ */
+final class ConcurrencyGovernor
+{
+    /** Default number of I/O permits. */
+    static final int DEFAULT_IO_PERMITS = 4;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ThreadLocal<ConcurrencyGovernor> CURRENT = new ThreadLocal<>();
+    /** The governor used outside of the executions of the plugin (e.g. by the unit tests). */
+    private static final ConcurrencyGovernor DEFAULT = new ConcurrencyGovernor(0, 0);
+
+    private final Pool cpu;
+    private final Pool io;
+    /** The helper threads, started with the first task. */
+    private ExecutorService executor;
+
+    /**
+     * Constructor.
+     * @param cpuPermits the number of CPU permits, or 0 for the number of processors.
+     * @param ioPermits the number of I/O permits, or 0 for {@link #DEFAULT_IO_PERMITS}.
+     */
+    ConcurrencyGovernor(int cpuPermits, int ioPermits)
+    {
+        cpu = new Pool("CPU", cpuPermits > 0 ? cpuPermits : Runtime.getRuntime().availableProcessors());
+        io = new Pool("I/O", ioPermits > 0 ? ioPermits : DEFAULT_IO_PERMITS);
+    }
+
+    /**
+     * Gets the governor bound to the current thread.
+     * @return the governor, or a governor with the default limits outside of the executions of the plugin.
+     */
+    static ConcurrencyGovernor current()
+    {
+        final ConcurrencyGovernor governor = CURRENT.get();
+        return governor != null ? governor : DEFAULT;
+    }
+
+    /**
+     * Binds a governor to the current thread.
+     * @param governor the governor, or null to unbind the current one.
+     * @return the governor previously bound to the thread (null if none), to be bound again once done.
+     */
+    static ConcurrencyGovernor bind(ConcurrencyGovernor governor)
+    {
+        final ConcurrencyGovernor previous = CURRENT.get();
+        if (governor != null)
+        {
+            CURRENT.set(governor);
+        }
+        else
+        {
+            CURRENT.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Acquires a CPU permit, waiting for one to be released if necessary.
+     * @return the permit, to be closed once the task is finished.
+     * @throws InterruptedIOException if the thread is interrupted.
+     */
+    Permit cpu() throws InterruptedIOException
+    {
+        return cpu.acquire();
+    }
+
+    /**
+     * Acquires CPU permits for helper threads, if they are available, without waiting.
+     * @param count the number of permits requested.
+     * @return the permits, between 0 and count of them, to be closed once the tasks are finished.
+     */
+    Permit tryCpu(int count)
+    {
+        return cpu.tryAcquire(count);
+    }
+
+    /**
+     * Acquires an I/O permit, waiting for one to be released if necessary.
+     * @return the permit, to be closed once the task is finished.
+     * @throws InterruptedIOException if the thread is interrupted.
+     */
+    Permit io() throws InterruptedIOException
+    {
+        return io.acquire();
+    }
+
+    /**
+     * Gets the helper threads, which run the tasks as soon as they are submitted.
+     * The threads are daemon threads, stopped after a while without tasks, so that they do not need to be
+     * shut down.
+     * @return the helper threads.
+     */
+    synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newCachedThreadPool(runnable ->
+            {
+                final Thread thread = new Thread(runnable, "reproducible-helper-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Wraps a task of a helper thread, so that it runs with this governor bound to the thread.
+     * @param task the task.
+     * @param <T> the type of the result of the task.
+     * @return the wrapped task.
+     */
+    <T> Callable<T> bound(Callable<T> task)
+    {
+        return () ->
+        {
+            final ConcurrencyGovernor previous = bind(this);
+            try
+            {
+                return task.call();
+            }
+            finally
+            {
+                bind(previous);
+            }
+        };
+    }
+
+    /**
+     * Gets the number of CPU permits currently acquired.
+     * @return the number of permits.
+     */
+    int getCpuUsed()
+    {
+        return cpu.getUsed();
+    }
+
+    /**
+     * Gets the number of I/O permits currently acquired.
+     * @return the number of permits.
+     */
+    int getIoUsed()
+    {
+        return io.getUsed();
+    }
+
+    /**
+     * Permits acquired from the governor, released when closed.
+     */
+    static final class Permit implements AutoCloseable
+    {
+        private final Pool pool;
+        private final int count;
+        private boolean released;
+
+        private Permit(Pool pool, int count)
+        {
+            this.pool = pool;
+            this.count = count;
+        }
+
+        /**
+         * Gets the number of permits.
+         * @return the number of permits.
+         */
+        int getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public void close()
+        {
+            if (!released)
+            {
+                released = true;
+                pool.release(count);
+            }
+        }
+    }
+
+    /**
+     * Permits of a kind of task.
+     */
+    private static final class Pool
+    {
+        private final String name;
+        private final int limit;
+        private int used;
+
+        private Pool(String name, int limit)
+        {
+            this.name = name;
+            this.limit = limit;
+        }
+
+        private synchronized Permit acquire() throws InterruptedIOException
+        {
+            while (used >= limit)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a " + name + " permit");
+                }
+            }
+            used++;
+            return new Permit(this, 1);
+        }
+
+        private synchronized Permit tryAcquire(int count)
+        {
+            final int acquired = Math.max(0, Math.min(count, limit - used));
+            used += acquired;
+            return new Permit(this, acquired);
+        }
+
+        private synchronized void release(int count)
+        {
+            used -= count;
+            notifyAll();
+        }
+
+        private synchronized int getUsed()
+        {
+            return used;
+        }
+    }
+}
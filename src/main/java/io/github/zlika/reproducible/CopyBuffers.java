@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bulk copies of data (files, entries of archives, streams), with a pool of large reusable buffers
+ * shared by all the executions of the plugin in the JVM.
+ * The size of the buffers can be tuned for the filesystem (e.g. larger buffers for a network filesystem).
+ * Only the copies from a file to another file ({@link #copy(Path, long, Path)}, e.g. the last copy of a pipeline
+ * of strippers or the copy of the archive of a Spring Boot executable) can use direct buffers, which avoid a copy
+ * of the data in the heap: the other copies read or write streams, which always use heap buffers.
+ * This class is thread-safe.
+ */
+final class CopyBuffers
+{
+    /** Default size of the buffers. */
+    static final int DEFAULT_BUFFER_SIZE = 128 * 1024;
+    /** Maximum number of buffers of each kind kept in the pool. */
+    static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+    /** The buffers of the JVM. */
+    static final CopyBuffers INSTANCE = new CopyBuffers();
+
+    private final BlockingQueue<byte[]> heapBuffers = new ArrayBlockingQueue<>(MAX_POOLED);
+    private final BlockingQueue<ByteBuffer> directBuffers = new ArrayBlockingQueue<>(MAX_POOLED);
+    private volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+    private volatile boolean direct;
+
+    /**
+     * Configures the buffers. The pooled buffers that do not match the new configuration are discarded.
+     * @param size the size of the buffers, in bytes.
+     * @param useDirectBuffers true to use direct buffers for the copies from a file to another file
+     *     (the other copies always use heap buffers).
+     */
+    synchronized void configure(int size, boolean useDirectBuffers)
+    {
+        if (size <= 0)
+        {
+            throw new IllegalArgumentException("Invalid buffer size: " + size);
+        }
+        if (size != bufferSize)
+        {
+            heapBuffers.clear();
+            directBuffers.clear();
+        }
+        bufferSize = size;
+        direct = useDirectBuffers;
+    }
+
+    /**
+     * Gets the size of the buffers.
+     * @return the size, in bytes.
+     */
+    int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Copies a stream to another one.
+     * @param in the stream to read (not closed).
+     * @param out the stream to write (neither flushed nor closed).
+     * @return the number of bytes copied.
+     * @throws IOException if the data cannot be copied.
+     */
+    long copy(InputStream in, OutputStream out) throws IOException
+    {
+        final byte[] buffer = acquire();
+        try
+        {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        }
+        finally
+        {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Copies a stream to a file.
+     * @param in the stream to read (not closed).
+     * @param target the file to write.
+     * @param options the options opening the file (by default, the file is created or truncated).
+     * @return the number of bytes copied.
+     * @throws IOException if the data cannot be copied.
+     */
+    long copy(InputStream in, Path target, OpenOption... options) throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream(target, options))
+        {
+            return copy(in, out);
+        }
+    }
+
+    /**
+     * Copies a file to a stream.
+     * @param source the file to read.
+     * @param out the stream to write (neither flushed nor closed).
+     * @return the number of bytes copied.
+     * @throws IOException if the data cannot be copied.
+     */
+    long copy(Path source, OutputStream out) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(source))
+        {
+            return copy(in, out);
+        }
+    }
+
+    /**
+     * Copies the end of a file to another file, which is created or truncated.
+     * @param source the file to read.
+     * @param position the position of the first byte to copy.
+     * @param target the file to write.
+     * @return the number of bytes copied.
+     * @throws IOException if the data cannot be copied.
+     */
+    long copy(Path source, long position, Path target) throws IOException
+    {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            in.position(position);
+            final ByteBuffer buffer = acquireByteBuffer();
+            try
+            {
+                long total = 0;
+                while (in.read(buffer) != -1)
+                {
+                    // Buffer methods, which also exist in Java 8 (ByteBuffer overrides them since Java 9)
+                    ((Buffer) buffer).flip();
+                    while (buffer.hasRemaining())
+                    {
+                        total += out.write(buffer);
+                    }
+                    ((Buffer) buffer).clear();
+                }
+                return total;
+            }
+            finally
+            {
+                release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Gets a heap buffer from the pool.
+     * @return the buffer (with an undefined content), to be released once it is no longer used.
+     */
+    byte[] acquire()
+    {
+        final byte[] buffer = heapBuffers.poll();
+        return buffer != null && buffer.length == bufferSize ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * Gives a heap buffer back to the pool.
+     * @param buffer the buffer, which must not be used anymore by the caller.
+     */
+    void release(byte[] buffer)
+    {
+        if (buffer.length == bufferSize)
+        {
+            heapBuffers.offer(buffer);
+        }
+    }
+
+    private ByteBuffer acquireByteBuffer()
+    {
+        if (!direct)
+        {
+            return ByteBuffer.wrap(acquire());
+        }
+        final ByteBuffer buffer = directBuffers.poll();
+        if (buffer != null && buffer.capacity() == bufferSize)
+        {
+            ((Buffer) buffer).clear();
+            return buffer;
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void release(ByteBuffer buffer)
+    {
+        if (!buffer.isDirect())
+        {
+            release(buffer.array());
+        }
+        else if (buffer.capacity() == bufferSize)
+        {
+            directBuffers.offer(buffer);
+        }
+    }
+}
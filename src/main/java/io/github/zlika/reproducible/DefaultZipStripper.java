@@ -25,20 +25,18 @@ import java.util.List;
 final class DefaultZipStripper implements Stripper
 {
     /**
-     * The ZipStripper to configure.
+     * The configured ZipStripper.
      */
     private final ZipStripper stripper;
-    private final List<String> manifestAttributes;
 
     /**
      * Constructor.
-     * @param stripper The ZipStripper to wrap with default config.
+     * @param builder The builder of the ZipStripper to build with default config.
      * @param manifestAttributes Additional manifest attributes to skip.
      */
-    public DefaultZipStripper(ZipStripper stripper, List<String> manifestAttributes)
+    public DefaultZipStripper(ZipStripper.Builder builder, List<String> manifestAttributes)
     {
-        this.manifestAttributes = Collections.unmodifiableList(manifestAttributes);
-        this.stripper = configure(stripper);
+        this.stripper = configure(builder, Collections.unmodifiableList(manifestAttributes)).build();
     }
 
     @Override
@@ -48,21 +46,23 @@ final class DefaultZipStripper implements Stripper
     }
 
     /**
-     * Configure the supplied ZipStripper.
-     * @param zip The ZipStripper to configure.
-     * @return The configured ZipStripper.
+     * Configure the supplied ZipStripper builder.
+     * The default strippers are used before the strippers already added to the builder.
+     * @param zip The builder to configure.
+     * @param manifestAttributes Additional manifest attributes to skip.
+     * @return The configured builder.
      */
-    private ZipStripper configure(ZipStripper zip)
+    private static ZipStripper.Builder configure(ZipStripper.Builder zip, List<String> manifestAttributes)
     {
-        zip.addFileStripper("META-INF/MANIFEST.MF", new ManifestStripper(manifestAttributes))
-            .addFileStripper("META-INF/maven/\\S*/pom.properties", new PropertiesFileStripper())
-            .addFileStripper("META-INF/maven/plugin.xml", new MavenPluginToolsStripper())
-            .addFileStripper("META-INF/maven/\\S*/plugin-help.xml", new MavenPluginToolsStripper())
-            .addFileStripper("META-INF/sisu/javax.inject.Named", LineEndingsStripper.INSTANCE)
-            .addFileStripper("META-INF/build-info.properties", new PropertiesFileStripper("build.time"))
-            .addFileStripper("BOOT-INF/classes/git.properties", new PropertiesFileStripper(
+        zip.addDefaultFileStripper("META-INF/MANIFEST.MF", new ManifestStripper(manifestAttributes))
+            .addDefaultFileStripper("META-INF/maven/\\S*/pom.properties", new PropertiesFileStripper())
+            .addDefaultFileStripper("META-INF/maven/plugin.xml", new MavenPluginToolsStripper())
+            .addDefaultFileStripper("META-INF/maven/\\S*/plugin-help.xml", new MavenPluginToolsStripper())
+            .addDefaultFileStripper("META-INF/sisu/javax.inject.Named", LineEndingsStripper.INSTANCE)
+            .addDefaultFileStripper("META-INF/build-info.properties", new PropertiesFileStripper("build.time"))
+            .addDefaultFileStripper("BOOT-INF/classes/git.properties", new PropertiesFileStripper(
                     "git.build.host", "git.build.time", "git.build.user.email", "git.build.user.name"))
-            .addFileStripper("META-INF/spring.factories", new PropertiesFileStripper());
+            .addDefaultFileStripper("META-INF/spring.factories", new PropertiesFileStripper());
         return zip;
     }
 }
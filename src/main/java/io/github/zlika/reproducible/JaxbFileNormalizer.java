@@ -0,0 +1,388 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Normalizes a file generated by the JAXB xjc tool.
+ * The file is read once, all the transformations (ObjectFactory methods sorting,
+ * removal of the timestamps in java and episode files) are done in memory,
+ * and the file is written once, only if its content has changed.
+ * When the {@link MemoryBudget} is exhausted, the timestamps are removed without holding the file in memory,
+ * so that the thread does not wait: only the sorting of the methods waits for the memory.
+ */
+final class JaxbFileNormalizer
+{
+    private static final int JAXB_FILE_JAXB_COMMENT_LINE_NUMBER = 1;
+    private static final int JAXB_FILE_TIMESTAMP_LINE_NUMBER = 4;
+    private static final int JAXB_EPISODE_JAXB_COMMENT_LINE_NUMBER = 4;
+    private static final int JAXB_EPISODE_TIMESTAMP_LINE_NUMBER = 7;
+    /** Number of lines needed to identify the files generated by xjc. */
+    private static final int HEADER_LINE_COUNT = JAXB_EPISODE_TIMESTAMP_LINE_NUMBER + 1;
+    /** Number of bytes read at first to identify the files generated by xjc. */
+    private static final int HEADER_SNIFF_SIZE = 512;
+    /** Estimation of the number of copies of the content of a file held in memory during its normalization. */
+    private static final int NORMALIZATION_COPIES = 6;
+
+    /**
+     * Result of the normalization of a file.
+     */
+    enum Result
+    {
+        /** The file has not been generated by xjc. */
+        IGNORED,
+        /** The file has been generated by xjc but is already normalized. */
+        UNCHANGED,
+        /** The file has been normalized. */
+        NORMALIZED
+    }
+
+    private final List<String> matchingCommentTexts;
+    private final Charset charset;
+    private final JaxbObjectFactoryFixer objectFactoryFixer;
+    private final LineNumberStripper jaxbFileDateStripper;
+    private final LineNumberStripper jaxbEpisodeDateStripper;
+    private boolean fixJaxbOrder = true;
+    private boolean removeJaxbTimestamps = true;
+
+    /**
+     * Constructor.
+     * @param matchingCommentTexts the texts for which at least one must be contained in the files to be processed.
+     * @param charset the charset of the files to be processed.
+     * @param lineSeparator the line separator to use in the files from which timestamps are removed.
+     */
+    JaxbFileNormalizer(List<String> matchingCommentTexts, Charset charset, LineSeparators lineSeparator)
+    {
+        this.matchingCommentTexts = matchingCommentTexts;
+        this.charset = charset;
+        this.objectFactoryFixer = new JaxbObjectFactoryFixer(matchingCommentTexts, charset);
+        this.jaxbFileDateStripper = new LineNumberStripper(JAXB_FILE_TIMESTAMP_LINE_NUMBER, lineSeparator);
+        this.jaxbEpisodeDateStripper = new LineNumberStripper(JAXB_EPISODE_TIMESTAMP_LINE_NUMBER, lineSeparator);
+    }
+
+    /**
+     * Sets whether the methods in ObjectFactory files are sorted.
+     * @param enabled true to sort the methods.
+     * @return this object (for method chaining).
+     */
+    JaxbFileNormalizer setFixJaxbOrder(boolean enabled)
+    {
+        this.fixJaxbOrder = enabled;
+        return this;
+    }
+
+    /**
+     * Sets whether the timestamps generated by JAXB are removed.
+     * @param enabled true to remove the timestamps.
+     * @return this object (for method chaining).
+     */
+    JaxbFileNormalizer setRemoveJaxbTimestamps(boolean enabled)
+    {
+        this.removeJaxbTimestamps = enabled;
+        return this;
+    }
+
+    /**
+     * Normalizes a file, if it has been generated by xjc.
+     * This method is thread-safe.
+     * @param file the file to normalize.
+     * @return the result of the normalization.
+     * @throws IOException if an I/O error occurs.
+     */
+    Result normalize(Path file) throws IOException
+    {
+        return normalize(file, DigestUtils.getSha256Digest());
+    }
+
+    /**
+     * Normalizes a file, if it has been generated by xjc, and records it in a manifest of the processed files.
+     * The hash of the normalized content is computed during the normalization, so that the file is not read
+     * again; the files not generated by xjc are recorded without hash, so that they are only sniffed.
+     * This method is thread-safe.
+     * @param file the file to normalize.
+     * @param attributes the attributes of the file, read before its normalization.
+     * @param manifest the manifest.
+     * @return the result of the normalization.
+     * @throws IOException if an I/O error occurs.
+     */
+    Result normalize(Path file, BasicFileAttributes attributes, ProcessedFilesManifest manifest) throws IOException
+    {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        final Result result = normalize(file, digest);
+        if (result == Result.IGNORED)
+        {
+            manifest.addIgnored(file, attributes);
+        }
+        else
+        {
+            manifest.add(file, Hex.encodeHexString(digest.digest()));
+        }
+        return result;
+    }
+
+    /**
+     * Normalizes a file, and updates a digest with its normalized content (unless it is ignored).
+     */
+    private Result normalize(Path file, MessageDigest digest) throws IOException
+    {
+        final String fileName = file.getFileName().toString();
+        // The content is held several times (bytes, decoded string, normalized copies)
+        final long reservation = Files.size(file) * NORMALIZATION_COPIES;
+        final MemoryBudget budget = MemoryBudget.current();
+        boolean reserved = false;
+        try
+        {
+            final byte[] original;
+            final boolean isJaxbFile;
+            final boolean isEpisodeFile;
+            try (InputStream is = Files.newInputStream(file))
+            {
+                // Only the first lines are needed to check if the file must be processed
+                final Header header = readHeader(is);
+                // We cannot rely on an exact comment text to check if it is a JAXB generated file
+                // because it depends on the current locale
+                isJaxbFile = isJaxbFile(header.lines);
+                isEpisodeFile = isEpisodeFile(fileName, header.lines);
+                if (!isJaxbFile && !isEpisodeFile)
+                {
+                    return Result.IGNORED;
+                }
+                if (!budget.tryReserve(reservation))
+                {
+                    if (!isJaxbFile || !(isEpisodeFile || sortsMethods(fileName)))
+                    {
+                        // Only one line is removed: the file does not need to be held in memory
+                        return normalizeStream(file, content(header, is),
+                                isJaxbFile ? jaxbFileDateStripper : jaxbEpisodeDateStripper, digest);
+                    }
+                    // The methods can only be sorted in memory: wait for the memory to be released
+                    budget.reserve(reservation);
+                }
+                reserved = true;
+                original = readFully(is, header);
+            }
+
+            final byte[] normalized = normalize(new String(original, charset), fileName, isJaxbFile, isEpisodeFile)
+                    .getBytes(charset);
+            digest.update(normalized);
+            // Leave the file untouched if possible, so that it is not recompiled needlessly
+            if (Arrays.equals(original, normalized))
+            {
+                return Result.UNCHANGED;
+            }
+            write(file, normalized);
+            return Result.NORMALIZED;
+        }
+        finally
+        {
+            if (reserved)
+            {
+                budget.release(reservation);
+            }
+        }
+    }
+
+    private String normalize(String content, String fileName, boolean isJaxbFile, boolean isEpisodeFile)
+    {
+        String normalized = content;
+        if (isJaxbFile && sortsMethods(fileName))
+        {
+            normalized = objectFactoryFixer.fix(normalized);
+        }
+        if (isJaxbFile && removeJaxbTimestamps)
+        {
+            normalized = jaxbFileDateStripper.strip(normalized);
+        }
+        if (isEpisodeFile && removeJaxbTimestamps)
+        {
+            normalized = jaxbEpisodeDateStripper.strip(normalized);
+        }
+        return normalized;
+    }
+
+    private boolean sortsMethods(String fileName)
+    {
+        return fixJaxbOrder && "ObjectFactory.java".equals(fileName);
+    }
+
+    /**
+     * Removes the timestamp of a file when the memory budget does not allow to hold it in memory:
+     * the file is normalized in a temporary file, which replaces it only if its content has changed.
+     */
+    private Result normalizeStream(Path file, InputStream content, LineNumberStripper stripper,
+            MessageDigest digest) throws IOException
+    {
+        if (!removeJaxbTimestamps)
+        {
+            DigestUtils.updateDigest(digest, content);
+            return Result.UNCHANGED;
+        }
+        final MessageDigest originalDigest = DigestUtils.getSha256Digest();
+        final MessageDigest normalizedDigest = DigestUtils.getSha256Digest();
+        final Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try
+        {
+            try (InputStream in = new DigestInputStream(content, originalDigest);
+                 OutputStream out = new DigestOutputStream(
+                         new DigestOutputStream(Files.newOutputStream(tmpFile), digest), normalizedDigest))
+            {
+                stripper.strip(in, out, charset);
+            }
+            if (MessageDigest.isEqual(originalDigest.digest(), normalizedDigest.digest()))
+            {
+                return Result.UNCHANGED;
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            return Result.NORMALIZED;
+        }
+        finally
+        {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private static void write(Path file, byte[] content) throws IOException
+    {
+        final Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try
+        {
+            Files.write(tmpFile, content);
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Reads the first lines of a file (the ones containing the comment added by xjc).
+     * Only the beginning of the file is read and decoded, which is much faster than reading
+     * the whole file when there are thousands of generated files.
+     */
+    private Header readHeader(InputStream is) throws IOException
+    {
+        final Header header = new Header();
+        header.data = new byte[HEADER_SNIFF_SIZE];
+        while (true)
+        {
+            final int read = is.read(header.data, header.length, header.data.length - header.length);
+            header.eof = read == -1;
+            header.length += header.eof ? 0 : read;
+            if (header.eof || header.length == header.data.length)
+            {
+                header.lines = splitLines(new String(header.data, 0, header.length, charset), header.eof);
+                if (header.eof || header.lines.size() >= HEADER_LINE_COUNT)
+                {
+                    return header;
+                }
+                // Very long lines: read more
+                header.data = Arrays.copyOf(header.data, header.data.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Gets the whole content of a file, once its first lines have been read.
+     */
+    private static InputStream content(Header header, InputStream is)
+    {
+        return new SequenceInputStream(new ByteArrayInputStream(header.data, 0, header.length), is);
+    }
+
+    private static byte[] readFully(InputStream is, Header header) throws IOException
+    {
+        if (header.eof)
+        {
+            return Arrays.copyOf(header.data, header.length);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(header.length * 2);
+        out.write(header.data, 0, header.length);
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> splitLines(String text, boolean complete) throws IOException
+    {
+        final List<String> lines = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new StringReader(text));
+        String line;
+        while (lines.size() <= HEADER_LINE_COUNT && (line = reader.readLine()) != null)
+        {
+            lines.add(line);
+        }
+        // The last line is not complete if the text is truncated in the middle of it
+        if (!complete && !lines.isEmpty() && !text.endsWith("\n") && !text.endsWith("\r"))
+        {
+            lines.remove(lines.size() - 1);
+        }
+        return lines.size() > HEADER_LINE_COUNT ? lines.subList(0, HEADER_LINE_COUNT) : lines;
+    }
+
+    private boolean isJaxbFile(List<String> lines)
+    {
+        return lines.size() > JAXB_FILE_TIMESTAMP_LINE_NUMBER
+                && lines.get(0).equals("//")
+                && matchingCommentTexts.stream().anyMatch(lines.get(JAXB_FILE_JAXB_COMMENT_LINE_NUMBER)::contains)
+                && lines.get(JAXB_FILE_TIMESTAMP_LINE_NUMBER).contains(":");
+    }
+
+    private boolean isEpisodeFile(String filename, List<String> lines)
+    {
+        return filename.endsWith(".episode")
+                && lines.size() > JAXB_EPISODE_TIMESTAMP_LINE_NUMBER
+                && matchingCommentTexts.stream()
+                .anyMatch(lines.get(JAXB_EPISODE_JAXB_COMMENT_LINE_NUMBER)::contains)
+                && lines.get(JAXB_EPISODE_TIMESTAMP_LINE_NUMBER).contains(":");
+    }
+
+    /**
+     * Beginning of a file.
+     */
+    private static final class Header
+    {
+        private byte[] data;
+        private int length;
+        private boolean eof;
+        private List<String> lines;
+    }
+}
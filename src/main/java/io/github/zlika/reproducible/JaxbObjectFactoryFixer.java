@@ -14,8 +14,12 @@
 
 package io.github.zlika.reproducible;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
@@ -57,16 +61,58 @@ final class JaxbObjectFactoryFixer implements Stripper
             Files.copy(in.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
             return;
         }
-        
-        final StringBuilder builder = new StringBuilder();
-        final int startMethodIndex = getStartMethodIndex(inContent);
-        builder.append(inContent.substring(0, startMethodIndex));
-        final List<String> methods = getMethodBodies(inContent, startMethodIndex);
-        final String footer = methods.get(methods.size() - 1);
-        methods.remove(methods.size() - 1);
-        methods.stream().sorted().forEach(method -> builder.append(method));
-        builder.append(footer);
-        Files.write(out.toPath(), builder.toString().getBytes(charset));
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(out.toPath()), charset)))
+        {
+            fix(inContent, writer);
+        }
+    }
+    
+    /**
+     * Sorts the methods of the content of an ObjectFactory file.
+     * @param content the content of the file.
+     * @return the fixed content, or the content unchanged if this is not an ObjectFactory file generated by xjc.
+     */
+    String fix(String content)
+    {
+        if (!checkIsXjcObjectFactoryFile(content))
+        {
+            return content;
+        }
+        final StringBuilder builder = new StringBuilder(content.length());
+        try
+        {
+            fix(content, builder);
+        }
+        catch (IOException e)
+        {
+            // Cannot happen with a StringBuilder
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Sorts the methods of the content of an ObjectFactory file.
+     * The methods are not copied: they are sorted as ranges of the content,
+     * which are then appended to the output.
+     */
+    private void fix(String content, Appendable out) throws IOException
+    {
+        final int startMethodIndex = getStartMethodIndex(content);
+        out.append(content, 0, startMethodIndex);
+        final List<MethodRange> methods = getMethodRanges(content, startMethodIndex);
+        final MethodRange footer = methods.remove(methods.size() - 1);
+        // The methods are sorted in the alphabetical order of their whole text,
+        // so that the order stays the same as with previous versions of the plugin.
+        // As all the methods start with the same javadoc text, this common prefix is skipped.
+        final int commonPrefixLength = getCommonPrefixLength(content, methods);
+        methods.forEach(method -> method.computeKey(content, commonPrefixLength));
+        methods.sort((m1, m2) -> m1.compareTo(m2, content, commonPrefixLength));
+        for (MethodRange method : methods)
+        {
+            out.append(content, method.start, method.end);
+        }
+        out.append(content, footer.start, footer.end);
     }
     
     private int getStartMethodIndex(String content)
@@ -74,24 +120,103 @@ final class JaxbObjectFactoryFixer implements Stripper
         return content.indexOf(END_OF_METHOD, content.indexOf("public ObjectFactory()")) + END_OF_METHOD.length();
     }
     
-    private List<String> getMethodBodies(String content, int startMethodIndex)
+    private List<MethodRange> getMethodRanges(String content, int startMethodIndex)
     {
-        final List<String> methods = new ArrayList<>();
+        final List<MethodRange> methods = new ArrayList<>();
         int currentIndex = startMethodIndex;
         int nextIndex;
         while ((nextIndex = content.indexOf(END_OF_METHOD, currentIndex)) >= 0)
         {
             nextIndex += END_OF_METHOD.length();
-            methods.add(content.substring(currentIndex, nextIndex));
+            methods.add(new MethodRange(currentIndex, nextIndex));
             currentIndex = nextIndex;
         }
-        methods.add(content.substring(currentIndex));
+        methods.add(new MethodRange(currentIndex, content.length()));
         return methods;
     }
+    
+    private static int getCommonPrefixLength(String content, List<MethodRange> methods)
+    {
+        if (methods.isEmpty())
+        {
+            return 0;
+        }
+        final MethodRange first = methods.get(0);
+        int length = first.length();
+        for (MethodRange method : methods)
+        {
+            length = Math.min(length, method.length());
+            int i = 0;
+            while (i < length && content.charAt(first.start + i) == content.charAt(method.start + i))
+            {
+                i++;
+            }
+            length = i;
+        }
+        return length;
+    }
 
     private boolean checkIsXjcObjectFactoryFile(String content)
     {
         return matchingCommentTexts.stream().anyMatch(content::contains)
                 && content.contains("public ObjectFactory()");
     }
+
+    /**
+     * Range of a method in the content of the file.
+     */
+    private static final class MethodRange
+    {
+        /** Number of characters packed in the sort key. */
+        private static final int KEY_LENGTH = Long.SIZE / Character.SIZE;
+        
+        private final int start;
+        private final int end;
+        /** The first characters after the common prefix, to compare most methods without reading their text. */
+        private long key;
+        
+        MethodRange(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+        
+        int length()
+        {
+            return end - start;
+        }
+        
+        void computeKey(String content, int offset)
+        {
+            key = 0;
+            for (int i = 0; i < KEY_LENGTH; i++)
+            {
+                final int index = start + offset + i;
+                key = (key << Character.SIZE) | (index < end ? content.charAt(index) : 0);
+            }
+        }
+        
+        /**
+         * Compares the texts of two methods, like {@link String#compareTo(String)} would do.
+         */
+        int compareTo(MethodRange other, String content, int offset)
+        {
+            final int keyComparison = Long.compareUnsigned(key, other.key);
+            if (keyComparison != 0)
+            {
+                return keyComparison;
+            }
+            final int minLength = Math.min(length(), other.length());
+            for (int i = offset + KEY_LENGTH; i < minLength; i++)
+            {
+                final char c1 = content.charAt(start + i);
+                final char c2 = content.charAt(other.start + i);
+                if (c1 != c2)
+                {
+                    return c1 - c2;
+                }
+            }
+            return length() - other.length();
+        }
+    }
 }
@@ -16,18 +16,17 @@ package io.github.zlika.reproducible;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 
 /**
  * Replace line endings by platform agnostic line endings.
  */
-public enum LineEndingsStripper implements Stripper
+public enum LineEndingsStripper implements StreamStripper
 {
     /** Singleton. */
     INSTANCE;
@@ -35,25 +34,22 @@ public enum LineEndingsStripper implements Stripper
     private static final String NEW_LINE = "\r\n";
     
     @Override
-    public void strip(File in, File out) throws IOException
+    public void strip(InputStream in, OutputStream out) throws IOException
     {
-        try (final BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8));
-            final BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(in), StandardCharsets.UTF_8)))
-        {
-            reader.lines()
-                        .forEach(s ->
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.lines()
+                    .forEach(s ->
+                    {
+                        try
                         {
-                            try
-                            {
-                                writer.write(s);
-                                writer.write(NEW_LINE);
-                            }
-                            catch (IOException e)
-                            {
-                            }
-                        });
-        }
+                            writer.write(s);
+                            writer.write(NEW_LINE);
+                        }
+                        catch (IOException e)
+                        {
+                        }
+                    });
+        writer.flush();
     }
 }
@@ -14,17 +14,22 @@
 
 package io.github.zlika.reproducible;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.util.List;
 
 /** Removes a given line in a text file based on the line number. */
-class LineNumberStripper implements Stripper
+class LineNumberStripper implements StreamStripper
 {
     private final int lineNumber;
     private final LineSeparators lineSeparator;
@@ -42,26 +47,60 @@ class LineNumberStripper implements Stripper
     }
     
     @Override
-    public void strip(File in, File out) throws IOException
+    public void strip(InputStream in, OutputStream out) throws IOException
     {
-        try (final BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8)))
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // Malformed input is reported, as Files.readAllLines() does
+        strip(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder())), writer);
+        writer.flush();
+    }
+    
+    /**
+     * Removes the line from a text, without holding it in memory.
+     * @param in the text.
+     * @param out the text without the line.
+     * @param charset the charset of the text, malformed input being replaced as when the text is decoded in memory.
+     * @throws IOException if an I/O error occurs.
+     */
+    void strip(InputStream in, OutputStream out, Charset charset) throws IOException
+    {
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+        strip(new BufferedReader(new InputStreamReader(in, charset)), writer);
+        writer.flush();
+    }
+
+    /**
+     * Removes the line from a text.
+     * @param content the text.
+     * @return the text without the line.
+     */
+    String strip(String content)
+    {
+        final StringWriter writer = new StringWriter(content.length());
+        try
+        {
+            strip(new BufferedReader(new StringReader(content)), writer);
+        }
+        catch (IOException e)
+        {
+            // Cannot happen with in-memory readers and writers
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+    
+    private void strip(BufferedReader reader, Writer writer) throws IOException
+    {
+        String line;
+        int i = 0;
+        while ((line = reader.readLine()) != null)
         {
-            final List<String> lines = Files.readAllLines(in.toPath(), StandardCharsets.UTF_8);
-            for (int i = 0; i < lines.size(); i++)
+            if (i != lineNumber)
             {
-                if (i != lineNumber)
-                {
-                    try
-                    {
-                        writer.write(lines.get(i));
-                        writer.write(lineSeparator.get());
-                    }
-                    catch (IOException e)
-                    {
-                    }
-                }
+                writer.write(line);
+                writer.write(lineSeparator.get());
             }
+            i++;
         }
     }
 }
@@ -14,8 +14,9 @@
 
 package io.github.zlika.reproducible;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -31,7 +32,7 @@ import java.util.List;
  * It also ensures that the MANIFEST entries are in a reproducible order
  * (workaround for MSHARED-511 that was fixed in maven-archiver-3.0.1).
  */
-public final class ManifestStripper implements Stripper
+public final class ManifestStripper implements StreamStripper
 {
     private static final String[] DEFAULT_ATTRIBUTES =
         { "Built-By", "Created-By", "Build-Jdk", "Build-Date", "Build-Time",
@@ -61,7 +62,7 @@ public final class ManifestStripper implements Stripper
     }
     
     @Override
-    public void strip(File in, File out) throws IOException
+    public void strip(InputStream in, OutputStream out) throws IOException
     {
         final TextFileStripper s1 = new TextFileStripper();
         manifestAttributes.forEach(att -> s1.addPredicate(s -> s.startsWith(att + ":")));
@@ -14,8 +14,9 @@
 
 package io.github.zlika.reproducible;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Strips files generated by maven-plugin-tools.
@@ -23,10 +24,10 @@ import java.io.IOException;
  * It generates some files in the META-INF folder
  * that start with an XML comment with the date.
  */
-class MavenPluginToolsStripper implements Stripper
+class MavenPluginToolsStripper implements StreamStripper
 {
     @Override
-    public void strip(File in, File out) throws IOException
+    public void strip(InputStream in, OutputStream out) throws IOException
     {
         new TextFileStripper()
             .addPredicate(s -> s.startsWith("<!-- Generated by maven-plugin-tools"))
@@ -0,0 +1,286 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Limits the heap memory used by the buffers of the plugin (in-memory copies of archive entries,
+ * contents of the files being normalized...).
+ * The components that buffer data reserve the memory they need before allocating it, and release it
+ * once the data is no longer needed. When the budget is exhausted, they either spill the data
+ * to temporary files ({@link #tryReserve(long)}), or wait for the memory to be released
+ * by the other threads ({@link #reserve(long)}).
+ * The budget is shared by all the executions of the plugin in a session (see {@link SessionState}),
+ * with the limit set by the first one. Each execution reserves the memory through its own scope
+ * ({@link #newScope()}), which tracks the peak of the execution, and which is bound to the threads doing its work.
+ * This class is thread-safe.
+ */
+final class MemoryBudget
+{
+    /** Default budget, as a fraction of the maximum heap size. */
+    private static final int DEFAULT_HEAP_FRACTION = 4;
+
+    private static final ThreadLocal<MemoryBudget> CURRENT = new ThreadLocal<>();
+    /** The budget used outside of the executions of the plugin (e.g. by the unit tests). */
+    private static final MemoryBudget DEFAULT = new MemoryBudget(parseLimit(null));
+
+    /** The budget charged with the reservations of this scope, null for the budget of a session. */
+    private final MemoryBudget parent;
+    private final long limit;
+    private long used;
+    private long peak;
+
+    /**
+     * Constructor.
+     * @param limit the budget, in bytes.
+     */
+    MemoryBudget(long limit)
+    {
+        this.parent = null;
+        this.limit = limit;
+    }
+
+    private MemoryBudget(MemoryBudget parent)
+    {
+        this.parent = parent;
+        this.limit = parent.limit;
+    }
+
+    /**
+     * Gets the budget bound to the current thread.
+     * @return the budget, or a budget with the default limit outside of the executions of the plugin.
+     */
+    static MemoryBudget current()
+    {
+        final MemoryBudget budget = CURRENT.get();
+        return budget != null ? budget : DEFAULT;
+    }
+
+    /**
+     * Binds a budget to the current thread.
+     * @param budget the budget, or null to unbind the current one.
+     * @return the budget previously bound to the thread (null if none), to be bound again once done.
+     */
+    static MemoryBudget bind(MemoryBudget budget)
+    {
+        final MemoryBudget previous = CURRENT.get();
+        if (budget != null)
+        {
+            CURRENT.set(budget);
+        }
+        else
+        {
+            CURRENT.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Wraps a task of a helper thread, so that it runs with this budget bound to the thread.
+     * @param task the task.
+     * @param <T> the type of the result of the task.
+     * @return the wrapped task.
+     */
+    <T> Callable<T> bound(Callable<T> task)
+    {
+        return () ->
+        {
+            final MemoryBudget previous = bind(this);
+            try
+            {
+                return task.call();
+            }
+            finally
+            {
+                bind(previous);
+            }
+        };
+    }
+
+    /**
+     * Creates the scope of an execution of the plugin: the memory it reserves is charged to this budget,
+     * and its peak is tracked separately.
+     * @return the scope.
+     */
+    MemoryBudget newScope()
+    {
+        return new MemoryBudget(this);
+    }
+
+    /**
+     * Parses a budget.
+     * @param budget the budget (a number of bytes, with an optional "k", "m" or "g" suffix),
+     *     or null or an empty string to use the default budget (a quarter of the maximum heap size).
+     * @return the budget, in bytes.
+     * @throws IllegalArgumentException if the budget cannot be parsed.
+     */
+    static long parseLimit(String budget)
+    {
+        return budget == null || budget.trim().isEmpty()
+                ? Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION : parseSize(budget);
+    }
+
+    /**
+     * Parses a size.
+     * @param size a number of bytes, with an optional "k", "m" or "g" suffix.
+     * @return the number of bytes.
+     * @throws IllegalArgumentException if the size cannot be parsed.
+     */
+    static long parseSize(String size)
+    {
+        if (size == null || size.trim().isEmpty())
+        {
+            throw new IllegalArgumentException("Empty size");
+        }
+        final String value = size.trim().toLowerCase(Locale.ROOT);
+        final int unit = "kmg".indexOf(value.charAt(value.length() - 1)) + 1;
+        try
+        {
+            final long number = Long.parseLong(unit == 0 ? value : value.substring(0, value.length() - 1).trim());
+            if (number < 0)
+            {
+                throw new IllegalArgumentException("Negative size: " + size);
+            }
+            return Math.multiplyExact(number, 1L << (10 * unit));
+        }
+        catch (NumberFormatException | ArithmeticException e)
+        {
+            throw new IllegalArgumentException("Invalid size: " + size, e);
+        }
+    }
+
+    /**
+     * Reserves memory if it is available.
+     * @param bytes the number of bytes to reserve.
+     * @return true if the memory has been reserved, false if the caller must not buffer its data in memory.
+     */
+    boolean tryReserve(long bytes)
+    {
+        if (parent != null)
+        {
+            if (!parent.tryReserve(bytes))
+            {
+                return false;
+            }
+            add(bytes);
+            return true;
+        }
+        synchronized (this)
+        {
+            if (used + bytes > limit)
+            {
+                return false;
+            }
+            add(bytes);
+            return true;
+        }
+    }
+
+    /**
+     * Reserves memory, waiting for it to be released by the other threads if necessary.
+     * If more memory than the budget is requested, the reservation is granted once all
+     * the memory is released, so that the work is serialized but still done.
+     * @param bytes the number of bytes to reserve.
+     * @throws InterruptedIOException if the thread is interrupted.
+     */
+    void reserve(long bytes) throws InterruptedIOException
+    {
+        if (parent != null)
+        {
+            parent.reserve(bytes);
+            add(bytes);
+            return;
+        }
+        synchronized (this)
+        {
+            while (used > 0 && used + bytes > limit)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for memory");
+                }
+            }
+            add(bytes);
+        }
+    }
+
+    /**
+     * Releases memory previously reserved.
+     * @param bytes the number of bytes to release.
+     */
+    void release(long bytes)
+    {
+        if (parent != null)
+        {
+            parent.release(bytes);
+        }
+        synchronized (this)
+        {
+            used -= bytes;
+            notifyAll();
+        }
+    }
+
+    private synchronized void add(long bytes)
+    {
+        used += bytes;
+        peak = Math.max(peak, used);
+    }
+
+    /**
+     * Gets the budget.
+     * @return the budget, in bytes.
+     */
+    long getLimit()
+    {
+        return limit;
+    }
+
+    /**
+     * Gets the memory currently reserved.
+     * @return the number of bytes currently reserved.
+     */
+    synchronized long getUsed()
+    {
+        return used;
+    }
+
+    /**
+     * Gets the peak of the reserved memory.
+     * @return the peak, in bytes.
+     */
+    synchronized long getPeak()
+    {
+        return peak;
+    }
+
+    /**
+     * Formats the peak and the budget, to be displayed in the log.
+     * @return the peak and the budget.
+     */
+    synchronized String describePeak()
+    {
+        return String.format(Locale.ROOT, "Peak memory used by the buffers: %.1f MiB (budget: %.1f MiB)",
+                peak / (1024.0 * 1024), limit / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * In-memory cache of the stripped nested archives (e.g. the dependency jars embedded in several wars
+ * or Spring Boot jars of a multi-module build), shared by the executions of the plugin in a session
+ * (see {@link SessionState}) and dropped with it.
+ * The stripped archives are kept compressed, so that they are copied as-is in the stripped archives.
+ * The size of the cache is bounded: the least recently used archives are evicted.
+ * This class is thread-safe.
+ */
+final class NestedArchiveCache
+{
+    /** Default maximum size of the cache. */
+    static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    /** Stripped archives, from the least recently used to the most recently used. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxSize;
+    private long size;
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum size of the cache, in bytes.
+     */
+    NestedArchiveCache(long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Computes the key of a nested archive.
+     * @param zip the archive containing the nested archive.
+     * @param entry the entry of the nested archive.
+     * @param fingerprint the fingerprint of the configuration of the stripper of the nested archive.
+     * @return the key.
+     * @throws IOException if the entry cannot be read.
+     */
+    static String key(ZipFile zip, ZipArchiveEntry entry, String fingerprint) throws IOException
+    {
+        final String digest;
+        // The digest of the compressed content avoids decompressing the entry
+        try (InputStream is = zip.getRawInputStream(entry))
+        {
+            digest = DigestUtils.sha256Hex(is);
+        }
+        // The extension of the archive has an effect on the stripping (e.g. file attributes of jars)
+        return String.join("|", fingerprint, FileUtils.getFileExtension(new File(entry.getName())),
+                Long.toHexString(entry.getCrc()), Long.toString(entry.getSize()), digest);
+    }
+
+    /**
+     * Gets a stripped archive.
+     * @param key the key of the archive.
+     * @return the stripped archive, or null if it is not in the cache.
+     */
+    synchronized Entry get(String key)
+    {
+        return entries.get(key);
+    }
+
+    /**
+     * Checks if an archive can be added to the cache.
+     * @param compressedSize an estimation of the size of the compressed archive.
+     * @return true if it is not too large.
+     */
+    boolean accepts(long compressedSize)
+    {
+        // Large archives would evict too many entries
+        return compressedSize <= maxSize / 4;
+    }
+
+    /**
+     * Adds a stripped archive to the cache.
+     * @param key the key of the archive.
+     * @param entry the stripped archive.
+     */
+    synchronized void put(String key, Entry entry)
+    {
+        final Entry previous = entries.put(key, entry);
+        size += entry.data.length - (previous != null ? previous.data.length : 0);
+        evict();
+    }
+
+    private void evict()
+    {
+        final Iterator<Entry> it = entries.values().iterator();
+        while (size > maxSize && it.hasNext())
+        {
+            size -= it.next().data.length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Stripped archive, compressed with the method of the original entry.
+     */
+    static final class Entry
+    {
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+
+        private Entry(int method, long crc, long size, byte[] data)
+        {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        /**
+         * Compresses a stripped archive the same way as ZipArchiveOutputStream,
+         * so that the stripped archives are identical whether the cache is used or not.
+         * @param file the stripped archive.
+         * @param method the compression method ({@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}).
+         * @return the compressed archive.
+         * @throws IOException if the file cannot be read.
+         */
+        static Entry compress(File file, int method) throws IOException
+        {
+            final byte[] content = Files.readAllBytes(file.toPath());
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            if (method == ZipEntry.STORED)
+            {
+                return new Entry(method, crc.getValue(), content.length, content);
+            }
+            return new Entry(method, crc.getValue(), content.length, deflate(content));
+        }
+
+        private static byte[] deflate(byte[] content)
+        {
+            // Nested archives are compressed one after the other: the deflater of the thread is reused
+            final Deflater deflater = CompressionPool.acquireDeflater();
+            final byte[] buffer = CompressionPool.acquireBuffer();
+            try
+            {
+                deflater.setInput(content);
+                deflater.finish();
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+                while (!deflater.finished())
+                {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return compressed.toByteArray();
+            }
+            finally
+            {
+                CompressionPool.release(deflater);
+                CompressionPool.release(buffer);
+            }
+        }
+
+        /**
+         * Sets the compression method, the CRC and the sizes of a zip entry to the ones of this archive.
+         * @param entry the zip entry.
+         */
+        void apply(ZipArchiveEntry entry)
+        {
+            entry.setMethod(method);
+            entry.setCrc(crc);
+            entry.setSize(size);
+            entry.setCompressedSize(data.length);
+        }
+
+        /**
+         * Gets the compressed content of the archive.
+         * @return the compressed content (not copied: must not be modified).
+         */
+        byte[] getData()
+        {
+            return data;
+        }
+    }
+}
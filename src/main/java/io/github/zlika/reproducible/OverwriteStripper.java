@@ -15,6 +15,7 @@ package io.github.zlika.reproducible;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 
@@ -43,7 +44,17 @@ public class OverwriteStripper implements Stripper
         stripper.strip(in, out);
         if (this.overwrite)
         {
-            Files.move(out.toPath(), in.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try
+            {
+                // The stripped file is created next to the original file, so that it is replaced atomically:
+                // the original file is never seen partially overwritten
+                Files.move(out.toPath(), in.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(out.toPath(), in.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         }
     }
 }
@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * List of the files already processed by a previous execution of a goal,
+ * with their size, modification time and content hash after processing
+ * (no hash for the files ignored by the goal, which are checked again as soon as they are touched).
+ * It allows to process only the files that are new or that have been modified since.
+ * This class is thread-safe.
+ */
+final class ProcessedFilesManifest
+{
+    /**
+     * Files modified less than this delay (in ms) before the manifest was saved may have been
+     * modified again without a visible change of their modification time
+     * (file systems have a limited timestamp resolution), so their content is checked.
+     * This delay is used for the timestamps in whole seconds, which may come from a file system
+     * with a resolution of 1 or 2 seconds.
+     */
+    private static final long RACY_DELAY = 2000;
+    /** Same as {@link #RACY_DELAY}, for the timestamps with a sub-second precision (clock tick of the system). */
+    private static final long PRECISE_RACY_DELAY = 20;
+    private static final String SEPARATOR = "\t";
+
+    private final Path file;
+    private final Path baseDirectory;
+    private final String fingerprint;
+    private final Map<String, Entry> previousEntries;
+    private final long previousSaveTime;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private ProcessedFilesManifest(Path file, Path baseDirectory, String fingerprint,
+            Map<String, Entry> previousEntries, long previousSaveTime)
+    {
+        this.file = file;
+        this.baseDirectory = baseDirectory;
+        this.fingerprint = fingerprint;
+        this.previousEntries = previousEntries;
+        this.previousSaveTime = previousSaveTime;
+    }
+
+    /**
+     * Loads a manifest.
+     * The manifest is empty if the file does not exist, cannot be read,
+     * or has been saved with another configuration of the goal.
+     * @param file the file where the manifest is stored.
+     * @param baseDirectory the directory containing the files to process.
+     * @param fingerprint identifies the configuration of the goal.
+     * @return the manifest.
+     */
+    static ProcessedFilesManifest load(Path file, Path baseDirectory, String fingerprint)
+    {
+        final Map<String, Entry> previousEntries = new TreeMap<>();
+        long previousSaveTime = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            if (fingerprint.equals(reader.readLine()))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    final String[] fields = line.split(SEPARATOR, 4);
+                    previousEntries.put(fields[3],
+                            new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+                }
+                previousSaveTime = Files.getLastModifiedTime(file).toMillis();
+            }
+        }
+        catch (IOException | NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            // No usable manifest: all the files will be processed
+            previousEntries.clear();
+        }
+        return new ProcessedFilesManifest(file, baseDirectory, fingerprint,
+                Collections.unmodifiableMap(previousEntries), previousSaveTime);
+    }
+
+    /**
+     * Checks if a file has not been modified since it was processed.
+     * If so, the file is kept in the manifest.
+     * @param path the file.
+     * @param attributes the attributes of the file.
+     * @return true if the file does not need to be processed again.
+     * @throws IOException if an I/O error occurs.
+     */
+    boolean isUpToDate(Path path, BasicFileAttributes attributes) throws IOException
+    {
+        final String key = key(path);
+        final Entry previous = previousEntries.get(key);
+        if (previous == null || previous.size != attributes.size())
+        {
+            return false;
+        }
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final long racyDelay = lastModified % 1000 == 0 ? RACY_DELAY : PRECISE_RACY_DELAY;
+        if (previous.lastModified == lastModified && lastModified < previousSaveTime - racyDelay)
+        {
+            entries.put(key, previous);
+            return true;
+        }
+        // The file has been touched: compare its content, if it has been processed
+        if (!previous.hash.isEmpty() && previous.hash.equals(hash(path)))
+        {
+            entries.put(key, new Entry(previous.size, lastModified, previous.hash));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a file that has just been processed to the manifest.
+     * @param path the file.
+     * @param hash the SHA-256 hash of the content of the file after processing, known by the caller,
+     *     so that the file is not read again.
+     * @throws IOException if an I/O error occurs.
+     */
+    void add(Path path, String hash) throws IOException
+    {
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        entries.put(key(path), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+    }
+
+    /**
+     * Adds a file that has been ignored by the goal to the manifest, without hashing its content.
+     * @param path the file.
+     * @param attributes the attributes of the file, read before it was checked.
+     */
+    void addIgnored(Path path, BasicFileAttributes attributes)
+    {
+        entries.put(key(path), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), ""));
+    }
+
+    /**
+     * Saves the manifest, replacing the previous one.
+     * Only the files checked with {@link #isUpToDate} or added with {@link #add} or {@link #addIgnored} are kept.
+     * @throws IOException if an I/O error occurs.
+     */
+    void save() throws IOException
+    {
+        FileUtils.mkdirs(file.getParent().toFile());
+        final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try
+        {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+            {
+                writer.write(fingerprint);
+                writer.newLine();
+                for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet())
+                {
+                    final Entry value = entry.getValue();
+                    writer.write(value.size + SEPARATOR + value.lastModified + SEPARATOR + value.hash
+                            + SEPARATOR + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private String key(Path path)
+    {
+        return baseDirectory.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static String hash(Path path) throws IOException
+    {
+        try (InputStream is = Files.newInputStream(path))
+        {
+            return DigestUtils.sha256Hex(is);
+        }
+        catch (NoSuchFileException e)
+        {
+            return "";
+        }
+    }
+
+    /**
+     * State of a processed file.
+     */
+    private static final class Entry
+    {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        Entry(long size, long lastModified, String hash)
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -14,8 +14,9 @@
 
 package io.github.zlika.reproducible;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -24,7 +25,7 @@ import java.util.List;
  * This stripper removes all comment lines (as some of them can contain date/time),
  * fix the line endings and optionally remove some user-defined properties.
  */
-public final class PropertiesFileStripper implements Stripper
+public final class PropertiesFileStripper implements StreamStripper
 {
     private final List<String> propertiesToRemove;
     
@@ -38,7 +39,7 @@ public final class PropertiesFileStripper implements Stripper
     }
     
     @Override
-    public void strip(File in, File out) throws IOException
+    public void strip(InputStream in, OutputStream out) throws IOException
     {
         final TextFileStripper stripper = new TextFileStripper();
         stripper.addPredicate(s -> s.startsWith("#"));
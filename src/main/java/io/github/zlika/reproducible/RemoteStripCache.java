@@ -0,0 +1,273 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Remote cache of stripped files, shared by several machines (e.g. the agents of a CI fleet)
+ * through a plain HTTP server: the files are downloaded with GET requests and uploaded with PUT requests
+ * on {@code <url>/<key>}, without being loaded in memory.
+ * The SHA-256 digest of a file is uploaded after the file, on {@code <url>/<key>.sha256}:
+ * a downloaded file is only used if its size and its digest are the expected ones,
+ * otherwise (truncated or corrupted file, upload in progress) it is handled as a miss.
+ * The remote cache is only an optimization: when the server fails, the files are stripped locally.
+ * After several consecutive failures, the server is not contacted anymore for a while (circuit breaker),
+ * so that an unavailable server does not slow down the build.
+ * This class is thread-safe.
+ */
+final class RemoteStripCache
+{
+    /** Number of consecutive failures after which the server is not contacted anymore. */
+    private static final int FAILURE_THRESHOLD = 3;
+    /** Time during which the server is not contacted after too many failures. */
+    private static final long OPEN_CIRCUIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /** Suffix of the keys of the digests. */
+    private static final String DIGEST_SUFFIX = ".sha256";
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+
+    private final String url;
+    private final int timeoutMillis;
+    private final boolean push;
+    private final Log log;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntilMillis;
+
+    /**
+     * Constructor.
+     * @param url the base URL of the cache.
+     * @param timeoutMillis the connection and read timeout, in milliseconds.
+     * @param push true to upload the files stripped locally.
+     * @param log the logger.
+     */
+    RemoteStripCache(String url, int timeoutMillis, boolean push, Log log)
+    {
+        this.url = url.endsWith("/") ? url : url + "/";
+        this.timeoutMillis = timeoutMillis;
+        this.push = push;
+        this.log = log;
+    }
+
+    /**
+     * Downloads a cached file.
+     * @param key the key of the file.
+     * @param out the file where the cached file is downloaded, only written if the download is complete
+     *     and valid.
+     * @return true if the file has been downloaded, false if it is not in the cache, if it is not valid,
+     *     or if the server failed.
+     */
+    boolean get(String key, File out)
+    {
+        if (isCircuitOpen())
+        {
+            return false;
+        }
+        try
+        {
+            final boolean found = download(key, out);
+            succeeded();
+            return found;
+        }
+        catch (IOException e)
+        {
+            failed("download " + key, e);
+            return false;
+        }
+    }
+
+    /**
+     * Uploads a file, if the upload is enabled.
+     * @param key the key of the file.
+     * @param file the file to upload.
+     */
+    void put(String key, File file)
+    {
+        if (!push || isCircuitOpen())
+        {
+            return;
+        }
+        try
+        {
+            upload(key, file);
+            succeeded();
+        }
+        catch (IOException e)
+        {
+            failed("upload " + key, e);
+        }
+    }
+
+    private boolean download(String key, File out) throws IOException
+    {
+        final String expectedDigest = downloadDigest(key);
+        if (expectedDigest == null)
+        {
+            return false;
+        }
+        final HttpURLConnection connection = open(key, "GET");
+        final int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND)
+        {
+            connection.disconnect();
+            return false;
+        }
+        checkStatus(connection, status);
+        // The file is only moved in place once it is verified
+        final Path tmp = Files.createTempFile(out.getAbsoluteFile().getParentFile().toPath(), out.getName(), ".part");
+        try
+        {
+            final MessageDigest digest = DigestUtils.getSha256Digest();
+            final long size;
+            // The connection is kept alive for the next requests once the response is fully read
+            try (InputStream is = new DigestInputStream(connection.getInputStream(), digest))
+            {
+                size = CopyBuffers.INSTANCE.copy(is, tmp);
+            }
+            final long expectedSize = connection.getContentLengthLong();
+            if ((expectedSize >= 0 && size != expectedSize)
+                    || !expectedDigest.equals(Hex.encodeHexString(digest.digest())))
+            {
+                log.warn("Remote cache " + url + ": ignoring the invalid file " + key + " (" + size + " bytes)");
+                return false;
+            }
+            Files.move(tmp, out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Downloads the digest of a file.
+     * @return the digest, or null if it is not in the cache or if it is not valid.
+     */
+    private String downloadDigest(String key) throws IOException
+    {
+        final HttpURLConnection connection = open(key + DIGEST_SUFFIX, "GET");
+        final int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND)
+        {
+            connection.disconnect();
+            return null;
+        }
+        checkStatus(connection, status);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream is = connection.getInputStream())
+        {
+            CopyBuffers.INSTANCE.copy(is, content);
+        }
+        final String digest = new String(content.toByteArray(), StandardCharsets.US_ASCII).trim();
+        return DIGEST.matcher(digest).matches() ? digest : null;
+    }
+
+    private void upload(String key, File file) throws IOException
+    {
+        final String digest;
+        try (InputStream is = Files.newInputStream(file.toPath()))
+        {
+            digest = DigestUtils.sha256Hex(is);
+        }
+        // The digest is uploaded last: until then, the file is not used by the other machines
+        final HttpURLConnection connection = open(key, "PUT");
+        connection.setFixedLengthStreamingMode(file.length());
+        try (OutputStream os = connection.getOutputStream())
+        {
+            CopyBuffers.INSTANCE.copy(file.toPath(), os);
+        }
+        checkUpload(connection);
+        final byte[] digestContent = digest.getBytes(StandardCharsets.US_ASCII);
+        final HttpURLConnection digestConnection = open(key + DIGEST_SUFFIX, "PUT");
+        digestConnection.setFixedLengthStreamingMode(digestContent.length);
+        try (OutputStream os = digestConnection.getOutputStream())
+        {
+            os.write(digestContent);
+        }
+        checkUpload(digestConnection);
+    }
+
+    private static void checkUpload(HttpURLConnection connection) throws IOException
+    {
+        checkStatus(connection, connection.getResponseCode());
+        connection.getInputStream().close();
+    }
+
+    private HttpURLConnection open(String key, String method) throws IOException
+    {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url + key).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setUseCaches(false);
+        if ("PUT".equals(method))
+        {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+        }
+        return connection;
+    }
+
+    private static void checkStatus(HttpURLConnection connection, int status) throws IOException
+    {
+        if (status < HttpURLConnection.HTTP_OK || status >= HttpURLConnection.HTTP_MULT_CHOICE)
+        {
+            connection.disconnect();
+            throw new IOException("HTTP status " + status);
+        }
+    }
+
+    private boolean isCircuitOpen()
+    {
+        return System.currentTimeMillis() < openUntilMillis;
+    }
+
+    private void succeeded()
+    {
+        consecutiveFailures.set(0);
+    }
+
+    private void failed(String action, IOException e)
+    {
+        log.debug("Remote cache " + url + ": cannot " + action, e);
+        if (consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD)
+        {
+            consecutiveFailures.set(0);
+            openUntilMillis = System.currentTimeMillis() + OPEN_CIRCUIT_MILLIS;
+            log.warn("The remote cache " + url + " is disabled for "
+                    + TimeUnit.MILLISECONDS.toSeconds(OPEN_CIRCUIT_MILLIS) + "s after " + FAILURE_THRESHOLD
+                    + " consecutive failures (" + e.getMessage() + ")");
+        }
+    }
+}
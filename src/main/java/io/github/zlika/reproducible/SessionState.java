@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * State of the plugin shared by the executions of a Maven session (i.e. a build), and only by them:
+ * the JVM may run several sessions, one after the other or concurrently (e.g. with the Maven daemon).
+ * The state of a session is found from its execution request, which is shared by the copies of the session
+ * made for the modules built in parallel, and it is garbage collected with the session.
+ * This class is thread-safe.
+ */
+final class SessionState
+{
+    private static final Map<MavenExecutionRequest, SessionState> STATES = new WeakHashMap<>();
+
+    /** The zip strippers, by configuration. */
+    private final Map<String, DefaultZipStripper> zipStrippers = new ConcurrentHashMap<>();
+    /** The clients of the remote caches, by URL, timeout and push setting. */
+    private final Map<String, RemoteStripCache> remoteStripCaches = new ConcurrentHashMap<>();
+    /** The artifacts of the modules executing the "strip-jar-aggregate" goal. */
+    private final AggregateReactor aggregateReactor = new AggregateReactor();
+    /** The artifacts stripped in the background. */
+    private final BackgroundStripping backgroundStripping = new BackgroundStripping();
+    /** The cache of the stripped nested archives, null until an execution uses it. */
+    private NestedArchiveCache nestedArchiveCache;
+    /** The permits of the stripping tasks, null until an execution uses them. */
+    private ConcurrencyGovernor concurrencyGovernor;
+    /** The memory budget of the buffers, null until an execution uses it. */
+    private MemoryBudget memoryBudget;
+
+    private SessionState()
+    {
+    }
+
+    /**
+     * Gets the state of a session.
+     * @param session the session.
+     * @return the state of the session, created if needed.
+     */
+    static SessionState of(MavenSession session)
+    {
+        synchronized (STATES)
+        {
+            return STATES.computeIfAbsent(session.getRequest(), request -> new SessionState());
+        }
+    }
+
+    /**
+     * Gets the zip strippers of the session, by configuration: they are immutable, so they are shared by
+     * the modules built in parallel and reused by the next executions instead of being rebuilt.
+     * @return the zip strippers.
+     */
+    Map<String, DefaultZipStripper> getZipStrippers()
+    {
+        return zipStrippers;
+    }
+
+    /**
+     * Gets the clients of the remote caches of the session, by URL, timeout and push setting: they are shared
+     * by the modules, so that the state of their circuit breaker is kept from one module to the next one
+     * (a server that is down is not contacted again by each module).
+     * @return the clients of the remote caches.
+     */
+    Map<String, RemoteStripCache> getRemoteStripCaches()
+    {
+        return remoteStripCaches;
+    }
+
+    /**
+     * Gets the artifacts collected by the "strip-jar-aggregate" goal in the modules of the session.
+     * @return the artifacts.
+     */
+    AggregateReactor getAggregateReactor()
+    {
+        return aggregateReactor;
+    }
+
+    /**
+     * Gets the background stripping of the session.
+     * @return the background stripping.
+     */
+    BackgroundStripping getBackgroundStripping()
+    {
+        return backgroundStripping;
+    }
+
+    /**
+     * Gets the cache of the stripped nested archives of the session, shared by the modules.
+     * @param maxSize the maximum size of the cache, in bytes, used if the cache is created: the size is set
+     *     once by the first execution using the cache, so that an execution does not evict the archives cached
+     *     for the others.
+     * @return the cache.
+     */
+    synchronized NestedArchiveCache getNestedArchiveCache(long maxSize)
+    {
+        if (nestedArchiveCache == null)
+        {
+            nestedArchiveCache = new NestedArchiveCache(maxSize);
+        }
+        return nestedArchiveCache;
+    }
+
+    /**
+     * Gets the permits of the stripping tasks of the session, shared by the modules.
+     * @param cpuPermits the number of CPU permits (0 for the default), used if the permits are created.
+     * @param ioPermits the number of I/O permits (0 for the default), used if the permits are created.
+     *     The limits are set once by the first execution, so that the permits held by the other executions
+     *     are not lost.
+     * @return the permits.
+     */
+    synchronized ConcurrencyGovernor getConcurrencyGovernor(int cpuPermits, int ioPermits)
+    {
+        if (concurrencyGovernor == null)
+        {
+            concurrencyGovernor = new ConcurrencyGovernor(cpuPermits, ioPermits);
+        }
+        return concurrencyGovernor;
+    }
+
+    /**
+     * Gets the memory budget of the buffers of the session, shared by the modules.
+     * @param limit the budget, in bytes, used if the budget is created: it is set once by the first execution,
+     *     so that the memory reserved by the other executions is still accounted for.
+     * @return the budget.
+     */
+    synchronized MemoryBudget getMemoryBudget(long limit)
+    {
+        if (memoryBudget == null)
+        {
+            memoryBudget = new MemoryBudget(limit);
+        }
+        return memoryBudget;
+    }
+}
@@ -14,13 +14,14 @@
 
 package io.github.zlika.reproducible;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -29,7 +30,7 @@ import java.util.stream.Collectors;
 /**
  * Sorts a MANIFEST file by attribute.
  */
-final class SortManifestFileStripper implements Stripper
+final class SortManifestFileStripper implements StreamStripper
 {
     private static final Comparator<String> MANIFEST_ENTRY_COMPARATOR = new Comparator<String>()
     {
@@ -63,23 +64,23 @@ final class SortManifestFileStripper implements Stripper
     };
     
     @Override
-    public void strip(File in, File out) throws IOException
+    public void strip(InputStream in, OutputStream out) throws IOException
     {
-        final List<String> lines = Files.readAllLines(in.toPath(), StandardCharsets.UTF_8);
-        
-        try (final BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8)))
+        // Malformed input is reported, as Files.readAllLines() does
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder()));
+        final List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null)
         {
-            final String sortedManifest = sortManifestSections(lines).stream()
-                                            .collect(Collectors.joining("\r\n"));
-            try
-            {
-                writer.write(sortedManifest + "\r\n");
-            }
-            catch (IOException e)
-            {
-            }
+            lines.add(line);
         }
+        
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        final String sortedManifest = sortManifestSections(lines).stream()
+                                        .collect(Collectors.joining("\r\n"));
+        writer.write(sortedManifest + "\r\n");
+        writer.flush();
     }
     
     private List<String> sortManifestSections(List<String> lines)
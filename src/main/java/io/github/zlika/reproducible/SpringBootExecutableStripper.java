@@ -15,13 +15,13 @@
 package io.github.zlika.reproducible;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.util.Arrays;
 
 /**
  * Strips non-reproducible data from a JAR/WAR/ZIP file repackaged by
@@ -50,37 +50,39 @@ public class SpringBootExecutableStripper implements Stripper
     public void strip(File in, File out) throws IOException
     {
         final byte[] launchScript = extractLaunchScript(in);
-        final File tmp = Files.createTempFile(null, null).toFile();
-        final File tmp2 = Files.createTempFile(null, null).toFile();
-        tmp.deleteOnExit();
-        tmp2.deleteOnExit();
+        final File tmp = TempWorkspace.createTempFile(null, null);
+        final File tmp2 = TempWorkspace.createTempFile(null, null);
         try
         {
             extractZipFile(in, launchScript.length, tmp);
             zipStripper.strip(tmp, tmp2);
+            StripReport.tempFile(tmp);
+            StripReport.tempFile(tmp2);
             repackLaunchScript(launchScript, tmp2, out);
         }
         finally
         {
-            Files.delete(tmp.toPath());
-            Files.delete(tmp2.toPath());
+            TempWorkspace.delete(tmp);
+            TempWorkspace.delete(tmp2);
         }
     }
 
     private byte[] extractLaunchScript(File file) throws IOException
     {
-        final int startZipOffset;
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        // The launch script is small: it is read through a buffer, up to the header of the ZIP file
+        final ByteArrayOutputStream launchScript = new ByteArrayOutputStream();
+        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(file)))
         {
             int nextZipFileHeaderPos = 0;
             int matches = 0;
             while (matches != ZIP_FILE_HEADER.length)
             {
-                int b = raf.read();
+                int b = is.read();
                 if (b == -1)
                 {
                     throw new IOException("Cannot extract launch script");
                 }
+                launchScript.write(b);
                 if (b == ZIP_FILE_HEADER[nextZipFileHeaderPos])
                 {
                     matches++;
@@ -92,44 +94,22 @@ public class SpringBootExecutableStripper implements Stripper
                     nextZipFileHeaderPos = 0;
                 }
             }
-            startZipOffset = (int) raf.getFilePointer() - ZIP_FILE_HEADER.length;
         }
-        final byte[] launchScript = new byte[startZipOffset];
-        try (FileInputStream is = new FileInputStream(file))
-        {
-            is.read(launchScript);
-        }
-        return launchScript;
+        final byte[] content = launchScript.toByteArray();
+        return Arrays.copyOf(content, content.length - ZIP_FILE_HEADER.length);
     }
     
     private void extractZipFile(File in, int offset, File out) throws IOException
     {
-        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(in));
-                BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(out)))
-        {
-            for (int i = 0; i < offset; i++)
-            {
-                is.read();
-            }
-            int b;
-            while ((b = is.read()) != -1)
-            {
-                os.write(b);
-            }
-        }
+        CopyBuffers.INSTANCE.copy(in.toPath(), offset, out.toPath());
     }
     
     private void repackLaunchScript(byte[] launchScript, File in, File out) throws IOException
     {
-        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(in));
-                BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(out)))
+        try (OutputStream os = Files.newOutputStream(out.toPath()))
         {
             os.write(launchScript);
-            int b;
-            while ((b = is.read()) != -1)
-            {
-                os.write(b);
-            }
+            CopyBuffers.INSTANCE.copy(in.toPath(), os);
         }
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A stripper that can process its data as a stream,
+ * without the need of intermediate files.
+ */
+interface StreamStripper extends Stripper
+{
+    /**
+     * Strips non-reproducible data.
+     * The streams are not closed by this method, but the output stream is flushed.
+     * @param in the input stream.
+     * @param out the stripped output stream.
+     * @throws IOException if an I/O error occurs.
+     */
+    void strip(InputStream in, OutputStream out) throws IOException;
+
+    @Override
+    default void strip(File in, File out) throws IOException
+    {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(in));
+             OutputStream os = new BufferedOutputStream(new FileOutputStream(out)))
+        {
+            strip(is, os);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Local cache of stripped files, addressed by the digest of their content and of the configuration
+ * of the stripper, so that it can be shared by all the builds of a machine.
+ * The entries are published with atomic renames, so that concurrent builds never see partially
+ * written entries. The size of the cache is bounded: the least recently used entries are evicted
+ * by {@link #evict()}.
+ */
+final class StripCache
+{
+    private static final String TMP_SUFFIX = ".tmp";
+    /** Age after which the temporary files left by a crashed build are deleted. */
+    private static final long STALE_TMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+    private final long maxSize;
+
+    /**
+     * Constructor.
+     * @param directory the directory of the cache (created when the first entry is added).
+     * @param maxSize the maximum size of the cache, in bytes.
+     */
+    StripCache(Path directory, long maxSize)
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Computes the key of the stripped version of a file.
+     * @param in the file to strip.
+     * @param fingerprint the fingerprint of the stripper (type and configuration).
+     * @return the key.
+     * @throws IOException if the file cannot be read.
+     */
+    static String key(File in, String fingerprint) throws IOException
+    {
+        final String digest;
+        try (InputStream is = Files.newInputStream(in.toPath()))
+        {
+            digest = DigestUtils.sha256Hex(is);
+        }
+        return DigestUtils.sha256Hex(fingerprint + '|' + digest);
+    }
+
+    /**
+     * Copies a cached file.
+     * @param key the key of the file.
+     * @param out the file where the cached file is copied.
+     * @return true if the file is in the cache, false otherwise.
+     * @throws IOException if an I/O error occurs.
+     */
+    boolean get(String key, File out) throws IOException
+    {
+        final Path entry = entry(key);
+        try
+        {
+            Files.copy(entry, out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (NoSuchFileException e)
+        {
+            return false;
+        }
+        try
+        {
+            // The modification time gives the order of eviction
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException e)
+        {
+            // Evicted in the meantime by another build
+        }
+        return true;
+    }
+
+    /**
+     * Adds a file to the cache.
+     * @param key the key of the file.
+     * @param file the file to add.
+     * @throws IOException if an I/O error occurs.
+     */
+    void put(String key, File file) throws IOException
+    {
+        final Path entry = entry(key);
+        Files.createDirectories(entry.getParent());
+        final Path tmp = Files.createTempFile(entry.getParent(), key, TMP_SUFFIX);
+        try
+        {
+            Files.copy(file.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (FileAlreadyExistsException e)
+        {
+            // Published in the meantime by another build, with the same content
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the size of the cache is below its maximum size.
+     * @throws IOException if the cache cannot be listed.
+     */
+    void evict() throws IOException
+    {
+        if (!Files.isDirectory(directory))
+        {
+            return;
+        }
+        final List<Map.Entry<Path, BasicFileAttributes>> entries = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        long size = 0;
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList()))
+            {
+                final BasicFileAttributes attributes;
+                try
+                {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                }
+                catch (NoSuchFileException e)
+                {
+                    // Evicted in the meantime by another build
+                    continue;
+                }
+                if (!file.getFileName().toString().endsWith(TMP_SUFFIX))
+                {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(file, attributes));
+                    size += attributes.size();
+                }
+                else if (now - attributes.lastModifiedTime().toMillis() > STALE_TMP_MILLIS)
+                {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(e -> e.getValue().lastModifiedTime()));
+        for (int i = 0; i < entries.size() && size > maxSize; i++)
+        {
+            if (entries.get(i).getKey().toFile().delete())
+            {
+                size -= entries.get(i).getValue().size();
+            }
+        }
+    }
+
+    private Path entry(String key)
+    {
+        // Spread the entries in subdirectories, to keep the directories small
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+}
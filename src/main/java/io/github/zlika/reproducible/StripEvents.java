@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+
+/**
+ * Events emitted during the stripping of the artifacts, to profile a build with Java Flight Recorder
+ * (e.g. with the JVM option {@code -XX:StartFlightRecording}).
+ * Java Flight Recorder is only available since Java 11: the implementation emitting the events
+ * is in the Java 11 part of the multi-release jar of the plugin, and is loaded by reflection.
+ * With older versions of Java, the events are not emitted.
+ */
+interface StripEvents
+{
+    /** An event that does nothing. */
+    Event NO_EVENT = (bytesIn, bytesOut) ->
+    {
+    };
+
+    /** The events of the current JVM. */
+    StripEvents INSTANCE = load();
+
+    /**
+     * Begins the stripping of an artifact.
+     * @param artifact the artifact.
+     * @return the event, to be ended once the artifact is stripped.
+     */
+    Event artifactStrip(File artifact);
+
+    /**
+     * Begins the stripping of an archive nested in another archive.
+     * @param entry the name of the entry of the nested archive.
+     * @return the event, to be ended once the nested archive is stripped.
+     */
+    Event nestedArchiveStrip(String entry);
+
+    /**
+     * Begins the stripping of an entry of an archive by a sub-stripper.
+     * @param entry the name of the entry.
+     * @param stripper the sub-stripper.
+     * @return the event, to be ended once the entry is stripped.
+     */
+    Event subStripper(String entry, Stripper stripper);
+
+    /**
+     * Begins the buffering of data (an entry of an archive, the output of a stripper...),
+     * either in memory or in temporary files.
+     * @param name the name of the buffered data.
+     * @param onDisk true if the data is spilled in temporary files.
+     * @return the event, to be ended once the data is buffered.
+     */
+    Event buffering(String name, boolean onDisk);
+
+    /**
+     * Loads the implementation supported by the JVM.
+     * @return the implementation.
+     */
+    static StripEvents load()
+    {
+        try
+        {
+            return (StripEvents) Class.forName(StripEvents.class.getName() + "Recorder")
+                    .getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            return new StripEvents()
+            {
+                @Override
+                public Event artifactStrip(File artifact)
+                {
+                    return NO_EVENT;
+                }
+
+                @Override
+                public Event nestedArchiveStrip(String entry)
+                {
+                    return NO_EVENT;
+                }
+
+                @Override
+                public Event subStripper(String entry, Stripper stripper)
+                {
+                    return NO_EVENT;
+                }
+
+                @Override
+                public Event buffering(String name, boolean onDisk)
+                {
+                    return NO_EVENT;
+                }
+            };
+        }
+    }
+
+    /**
+     * An event with a duration, to be closed even if the processing fails.
+     */
+    interface Event extends AutoCloseable
+    {
+        /**
+         * Ends the event, once the processing succeeds.
+         * @param bytesIn the number of bytes read.
+         * @param bytesOut the number of bytes written.
+         */
+        void end(long bytesIn, long bytesOut);
+
+        /**
+         * Emits the event. If the event has not been ended, the processing has failed,
+         * and the event ends now without the sizes of the data.
+         */
+        @Override
+        default void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Fixes the produced artifacts of all the modules of the reactor to make the build reproducible.
+ * This goal has the same parameters as the "strip-jar" goal, but each module only collects its artifacts:
+ * the artifacts of all the modules are stripped together by the last module that executes this goal,
+ * on a bounded pool of threads, from the largest to the smallest.
+ * As the artifacts are stripped at the end of the reactor, the installation and the deployment of the artifacts
+ * should also be done at the end of the reactor (installAtEnd and deployAtEnd parameters of the
+ * maven-install-plugin and maven-deploy-plugin).
+ * The modules expected to execute this goal are the modules of the reactor with an execution of this goal
+ * (or all of them when the goal is invoked from the command line). A module executing this goal once the
+ * artifacts of the reactor are stripped (e.g. with an execution inherited from a lifecycle mapping) strips
+ * its own artifacts. When the plugin is declared as an extension, the build fails if artifacts are left
+ * unstripped because some expected modules have not executed the goal (e.g. after a failure with
+ * {@code --fail-at-end}).
+ */
+@Mojo(name = "strip-jar-aggregate", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, threadSafe = true)
+public final class StripJarAggregateMojo extends StripJarMojo
+{
+    /**
+     * Number of threads stripping the artifacts. By default, the number of processors.
+     */
+    @Parameter(defaultValue = "0", property = "reproducible.threads")
+    private int threads;
+
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true, required = true)
+    private MojoExecution mojoExecution;
+
+    @Override
+    public void execute() throws MojoExecutionException
+    {
+        final List<StripTask> tasks;
+        if (isSkip())
+        {
+            getLog().info("Skipping execution of goal \"" + mojoExecution.getGoal() + "\"");
+            tasks = Collections.emptyList();
+        }
+        else
+        {
+            tasks = prepare();
+        }
+        final AggregateReactor.Batch batch = SessionState.of(getSession()).getAggregateReactor().register(
+                getProject(), this::findModules, this::isFinished, isSkip() ? null : this, tasks);
+        if (batch == null)
+        {
+            getLog().info("Stripping of " + tasks.size() + " artifact(s) deferred to the end of the reactor");
+        }
+        else
+        {
+            try
+            {
+                stripAll(batch.getTasks());
+            }
+            finally
+            {
+                batch.getMojos().forEach(StripJarMojo::finish);
+            }
+        }
+    }
+
+    /**
+     * Checks if the build of a module has finished.
+     * @param module the module.
+     * @return true if the module has been built, or if its build has failed.
+     */
+    private boolean isFinished(MavenProject module)
+    {
+        return getSession().getResult().getBuildSummary(module) != null;
+    }
+
+    /**
+     * Finds the modules of the reactor that execute this goal.
+     * @return the modules.
+     */
+    private Set<MavenProject> findModules()
+    {
+        final Set<MavenProject> modules = new LinkedHashSet<>();
+        for (final MavenProject module : reactorProjects)
+        {
+            // All the modules execute the goal when it is invoked from the command line
+            if ("default-cli".equals(mojoExecution.getExecutionId()) || executesGoal(module))
+            {
+                modules.add(module);
+            }
+        }
+        modules.add(getProject());
+        return modules;
+    }
+
+    private boolean executesGoal(MavenProject module)
+    {
+        for (final Plugin plugin : module.getBuildPlugins())
+        {
+            if (plugin.getGroupId().equals(mojoExecution.getGroupId())
+                    && plugin.getArtifactId().equals(mojoExecution.getArtifactId()))
+            {
+                for (final PluginExecution execution : plugin.getExecutions())
+                {
+                    // The executions bound to the "none" phase are disabled
+                    if (execution.getGoals().contains(mojoExecution.getGoal()) && !"none".equals(execution.getPhase()))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Strips the artifacts of all the modules, from the largest to the smallest so that the largest ones
+     * do not delay the end of the stripping.
+     * @param tasks the artifacts of all the modules.
+     * @throws MojoExecutionException if an artifact cannot be stripped.
+     */
+    private void stripAll(List<StripTask> tasks) throws MojoExecutionException
+    {
+        if (tasks.isEmpty())
+        {
+            return;
+        }
+        tasks.sort(Comparator.comparingLong((StripTask task) -> task.getFile().length()).reversed());
+        final int poolSize = Math.min(tasks.size(),
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        getLog().info("Stripping " + tasks.size() + " artifact(s) of the reactor with " + poolSize + " thread(s)");
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try
+        {
+            final List<Future<Void>> results = new ArrayList<>();
+            for (final StripTask task : tasks)
+            {
+                results.add(executor.submit(() ->
+                {
+                    task.stripInWorkspace();
+                    return null;
+                }));
+            }
+            for (final Future<Void> result : results)
+            {
+                result.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause() instanceof MojoExecutionException ? (MojoExecutionException) e.getCause()
+                    : new MojoExecutionException("Error stripping the artifacts", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while stripping the artifacts", e);
+        }
+        finally
+        {
+            // Stops the stripping of the other artifacts after a failure
+            executor.shutdownNow();
+        }
+    }
+}
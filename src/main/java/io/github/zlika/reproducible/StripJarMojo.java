@@ -15,33 +15,29 @@
 package io.github.zlika.reproducible;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
 
 /**
  * Fixes the produced artifacts to make the build reproducible.
  */
 @Mojo(name = "strip-jar", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST,
         requiresProject = false, threadSafe = true)
-public final class StripJarMojo extends AbstractMojo
+public class StripJarMojo extends AbstractMojo
 {
-    private static final List<String> ZIP_EXT = Arrays.asList("zip", "jar", "war", "ear", "hpi", "adapter");
-    private static final List<String> ARCHIVE_EXT =
-            Arrays.asList(".tar", ".tar.gz", ".tar.bz2", ".tgz", ".cpio", ".rpm", ".ar", ".deb");
-    private static final byte[] ZIP_FILE_HEADER = new byte[] { 0x50, 0x4B, 0x03, 0x04 };
-    private static final byte[] SPRING_BOOT_EXEC_HEADER = new byte[] { 0x23, 0x21, 0x2F, 0x62, 0x69, 0x6E };
-
     /**
      * Directory where to find zip/jar/war/ear files for stripping.
      */
@@ -131,6 +127,162 @@ public final class StripJarMojo extends AbstractMojo
     @Parameter(property = "reproducible.nestedIncludes")
     private List<String> nestedIncludes;
 
+    /**
+     * JSON file where the statistics of the stripping of each artifact are written
+     * (time, sizes, number of entries, time spent in the strippers of the entries...).
+     * A summary of these statistics is also displayed in the log.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/reproducible-build/strip-jar-report.json",
+            property = "reproducible.reportFile")
+    private File reportFile;
+
+    /**
+     * Maximum heap memory used by the buffers of the plugin (a number of bytes, with an optional
+     * "k", "m" or "g" suffix), shared by all the executions of the plugin in the build.
+     * Above this budget, the data is spilled in temporary files, or the processing is delayed.
+     * By default, a quarter of the maximum heap size. The budget is set by the first execution of the plugin
+     * in the build.
+     */
+    @Parameter(property = "reproducible.memoryBudget")
+    private String memoryBudget;
+
+    /**
+     * Directory where the temporary files are created. Each execution uses its own subdirectory,
+     * which is deleted at the end of the execution.
+     * By default, it is located in the build directory, but it can point to a faster filesystem (e.g. a tmpfs).
+     * In all cases, the stripped artifacts are written next to the original ones, so that they are replaced
+     * by atomic renames.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/reproducible-build/tmp",
+            property = "reproducible.tempDirectory")
+    private File tempDirectory;
+
+    /**
+     * If true, the stripped files are stored in a local cache shared by all the builds,
+     * and reused when the same files are stripped again with the same configuration
+     * (e.g. the same third-party jars nested in several Spring Boot applications).
+     */
+    @Parameter(defaultValue = "false", property = "reproducible.cache")
+    private boolean cache;
+
+    /**
+     * Directory of the cache of the stripped files.
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/reproducible-cache", property = "reproducible.cacheDirectory")
+    private File cacheDirectory;
+
+    /**
+     * Maximum size of the cache of the stripped files (a number of bytes, with an optional "k", "m" or "g" suffix).
+     * The least recently used files are evicted when the cache is larger.
+     */
+    @Parameter(defaultValue = "1g", property = "reproducible.cacheMaxSize")
+    private String cacheMaxSize;
+
+    /**
+     * Base URL of a remote cache of the stripped files, shared by several machines (e.g. a CI fleet).
+     * The files are downloaded with GET requests and uploaded with PUT requests on {@code <url>/<key>},
+     * so any HTTP server accepting PUT requests can be used.
+     * The SHA-256 digest of each file is uploaded on {@code <url>/<key>.sha256}, and the downloaded files
+     * whose size or digest does not match are ignored.
+     * The remote cache is disabled if no URL is provided.
+     */
+    @Parameter(property = "reproducible.remoteCacheUrl")
+    private String remoteCacheUrl;
+
+    /**
+     * If true, the files stripped locally are uploaded to the remote cache
+     * (typically only enabled on the CI builds).
+     */
+    @Parameter(defaultValue = "false", property = "reproducible.remoteCachePush")
+    private boolean remoteCachePush;
+
+    /**
+     * Connection and read timeout of the requests to the remote cache, in milliseconds.
+     */
+    @Parameter(defaultValue = "5000", property = "reproducible.remoteCacheTimeout")
+    private int remoteCacheTimeout;
+
+    /**
+     * Maximum size of the in-memory cache of the stripped nested archives (a number of bytes, with an optional
+     * "k", "m" or "g" suffix), shared by all the modules of a build: the dependency jars nested in several wars
+     * or Spring Boot jars are only stripped once, and then copied as-is. 0 to disable the cache.
+     * The cache is dropped at the end of the build, and its size is set by the first execution using it.
+     */
+    @Parameter(defaultValue = "64m", property = "reproducible.nestedArchiveCacheSize")
+    private String nestedArchiveCacheSize;
+
+    /**
+     * If true, the artifacts are stripped by a pool of threads in the background, while the build goes on
+     * (e.g. while the next modules are compiled). The stripping is joined before the artifacts are installed
+     * or deployed, and at the end of the build, which fails if an artifact cannot be stripped.
+     * This requires the plugin to be declared as an extension (extensions element set to true):
+     * otherwise, the artifacts are stripped synchronously.
+     */
+    @Parameter(defaultValue = "false", property = "reproducible.async")
+    private boolean async;
+
+    /**
+     * If true, the stripped files are the artifact of the project and its attached artifacts
+     * (e.g. sources, javadoc, assemblies), wherever they are written, instead of the files found in outputDirectory.
+     * The files are classified by the extension of their artifact type, so the other files of outputDirectory
+     * are neither listed nor read.
+     */
+    @Parameter(defaultValue = "false", property = "reproducible.projectArtifacts")
+    private boolean projectArtifacts;
+
+    /**
+     * Maximum number of threads stripping artifacts at the same time (CPU-heavy tasks), shared by all the
+     * executions of the plugin in the build, e.g. by the modules of a parallel build. By default, the number
+     * of processors. The limits are set by the first execution of the plugin in the build.
+     */
+    @Parameter(defaultValue = "0", property = "reproducible.cpuPermits")
+    private int cpuPermits;
+
+    /**
+     * Maximum number of disk-heavy tasks (reading and writing the caches of the stripped files) running
+     * at the same time, shared by all the executions of the plugin in the build. By default, 4.
+     * The limits are set by the first execution of the plugin in the build.
+     */
+    @Parameter(defaultValue = "0", property = "reproducible.ioPermits")
+    private int ioPermits;
+
+    /**
+     * Size of the buffers used to copy the files and the entries of the archives (a number of bytes,
+     * with an optional "k", "m" or "g" suffix), shared by all the executions of the plugin in the JVM.
+     * Larger buffers can speed up the copies on a network filesystem.
+     */
+    @Parameter(defaultValue = "128k", property = "reproducible.copyBufferSize")
+    private String copyBufferSize;
+
+    /**
+     * If true, the copies from a file to another file (e.g. the last copy of a chain of strippers, or the copy
+     * of the archive of a Spring Boot executable) use direct buffers (allocated outside of the heap), which avoid
+     * a copy of the data in the heap. It has no effect on the other copies (the entries of the archives, the caches
+     * of the stripped files...), which read or write streams and always use heap buffers.
+     */
+    @Parameter(defaultValue = "false", property = "reproducible.directCopyBuffers")
+    private boolean directCopyBuffers;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    @Parameter(defaultValue = "${project}", readonly = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
+    /** The reports of the artifacts, which may be stripped by several threads. */
+    private final List<StripReport> reports = Collections.synchronizedList(new ArrayList<>());
+    private ConcurrencyGovernor governor;
+    /** The memory reserved by this execution, charged to the budget of the session. */
+    private MemoryBudget memory;
+    private StripCache stripCache;
+    private RemoteStripCache remoteStripCache;
+    private String cacheFingerprint;
+    /** The maximum size of the cache of the stripped nested archives, 0 if it is disabled. */
+    private long nestedArchiveCacheMaxSize;
+
     @Override
     public void execute() throws MojoExecutionException
     {
@@ -138,69 +290,339 @@ public final class StripJarMojo extends AbstractMojo
         {
             getLog().info("Skipping execution of goal \"strip-jar\"");
         }
+        else if (this.async && SessionState.of(this.session).getBackgroundStripping().isEnabled())
+        {
+            final List<StripTask> tasks = this.prepare();
+            getLog().info("Stripping " + tasks.size() + " artifact(s) in the background");
+            SessionState.of(this.session).getBackgroundStripping().submit(this, tasks);
+        }
         else
         {
-            if (this.includes == null || this.includes.isEmpty())
+            if (this.async)
             {
-                this.includes = Collections.singletonList(".*");
+                getLog().warn("The plugin is not declared as an extension: the artifacts are stripped synchronously");
             }
-            if (this.excludes == null)
+            final List<StripTask> tasks = this.prepare();
+            final TempWorkspace workspace = TempWorkspace.open(this.tempDirectory);
+            try
             {
-                this.excludes = Collections.emptyList();
+                for (final StripTask task : tasks)
+                {
+                    task.strip();
+                }
             }
+            finally
+            {
+                this.closeWorkspace(workspace);
+            }
+            this.finish();
+        }
+    }
 
-            final LocalDateTime reproducibleDateTime = LocalDateTime.parse(zipDateTime,
-                    DateTimeFormatter.ofPattern(zipDateTimeFormatPattern));
-            final ZipStripper zipStripper = new ZipStripper(reproducibleDateTime, fixZipExternalFileAttributes);
-            newLineTextFiles.forEach(f -> zipStripper.addFileStripper(f, LineEndingsStripper.INSTANCE));
-            final Stripper stripper = new OverwriteStripper(this.overwrite, new DefaultZipStripper(zipStripper,
-                    this.manifestAttributes));
+    /**
+     * Checks if the execution is skipped.
+     * @return the value of the skip parameter.
+     */
+    boolean isSkip()
+    {
+        return skip;
+    }
+
+    /**
+     * Configures the strippers and finds the artifacts to strip.
+     * @return the artifacts to strip, in the order in which they must be stripped.
+     * @throws MojoExecutionException if the configuration is invalid.
+     */
+    List<StripTask> prepare() throws MojoExecutionException
+    {
+        if (this.includes == null || this.includes.isEmpty())
+        {
+            this.includes = Collections.singletonList(".*");
+        }
+        if (this.excludes == null)
+        {
+            this.excludes = Collections.emptyList();
+        }
+        this.applyMemoryBudget();
+        this.governor = SessionState.of(this.session).getConcurrencyGovernor(this.cpuPermits, this.ioPermits);
+        this.configureCopyBuffers();
+
+        final LocalDateTime reproducibleDateTime = LocalDateTime.parse(zipDateTime,
+                DateTimeFormatter.ofPattern(zipDateTimeFormatPattern));
+        this.createCache(reproducibleDateTime);
+        final DefaultZipStripper zipStripper = SessionState.of(this.session).getZipStrippers()
+                .computeIfAbsent(this.zipStripperKey(), key -> this.createZipStripper(reproducibleDateTime));
+
+        final ArtifactFinder finder = new ArtifactFinder(this.getLog(), this.includes, this.excludes);
+        if (this.projectArtifacts)
+        {
+            finder.addProjectArtifacts(this.project);
+        }
+        else
+        {
+            finder.addDirectory(this.outputDirectory);
+        }
+        final List<StripTask> tasks = new ArrayList<>();
+        this.addTasks(tasks, finder.getZipFiles(),
+                new OverwriteStripper(this.overwrite, this.cached(zipStripper)));
+        this.addTasks(tasks, finder.getSpringBootExecutables(),
+                new OverwriteStripper(this.overwrite, this.cached(new SpringBootExecutableStripper(zipStripper))));
+        this.addTasks(tasks, finder.getArchiveFiles(),
+                new OverwriteStripper(this.overwrite, this.cached(new SmartArchiveStripper(reproducibleDateTime))));
+        return tasks;
+    }
+
+    /**
+     * Gets the current project.
+     * @return the project.
+     */
+    MavenProject getProject()
+    {
+        return project;
+    }
+
+    /**
+     * Gets the current session.
+     * @return the session.
+     */
+    MavenSession getSession()
+    {
+        return session;
+    }
+
+    private void addTasks(List<StripTask> tasks, List<File> files, Stripper stripper)
+    {
+        for (final File file : files)
+        {
+            tasks.add(new StripTask(this, file, stripper));
+        }
+    }
+
+    /**
+     * Evicts the cache and reports the statistics, once all the artifacts are stripped.
+     */
+    void finish()
+    {
+        this.evictCache();
+        this.report();
+        getLog().info(this.memory.describePeak());
+    }
+
+    /**
+     * Creates the caches of the stripped files, if enabled.
+     * @param reproducibleDateTime the date/time used in the stripped files.
+     * @throws MojoExecutionException if the maximum size of a cache is invalid.
+     */
+    private void createCache(LocalDateTime reproducibleDateTime) throws MojoExecutionException
+    {
+        if (cache)
+        {
+            stripCache = new StripCache(cacheDirectory.toPath(), parseSize(cacheMaxSize, "cache size"));
+        }
+        if (remoteCacheUrl != null && !remoteCacheUrl.trim().isEmpty())
+        {
+            final String url = remoteCacheUrl.trim();
+            remoteStripCache = SessionState.of(session).getRemoteStripCaches().computeIfAbsent(
+                    String.join("|", url, String.valueOf(remoteCacheTimeout), String.valueOf(remoteCachePush)),
+                    key -> new RemoteStripCache(url, remoteCacheTimeout, remoteCachePush, getLog()));
+        }
+        // All the parameters that have an effect on the stripped files
+        cacheFingerprint = String.join("|", "v1", String.valueOf(pluginVersion), reproducibleDateTime.toString(),
+                String.valueOf(fixZipExternalFileAttributes), String.valueOf(manifestAttributes),
+                String.valueOf(newLineTextFiles), String.valueOf(nestedIncludes));
+        nestedArchiveCacheMaxSize = parseSize(nestedArchiveCacheSize, "nested archive cache size");
+    }
+
+    /**
+     * Computes the key of the zip stripper for the configuration of this execution.
+     * @return all the parameters that have an effect on the zip stripper.
+     */
+    private String zipStripperKey()
+    {
+        return String.join("|", cacheFingerprint, String.valueOf(stripCache != null), String.valueOf(cacheDirectory),
+                cacheMaxSize, String.valueOf(remoteCacheUrl), String.valueOf(remoteCachePush),
+                String.valueOf(remoteCacheTimeout), String.valueOf(nestedArchiveCacheMaxSize > 0));
+    }
 
-            if (this.nestedIncludes != null && !this.nestedIncludes.isEmpty())
+    /**
+     * Creates the zip stripper for the configuration of this execution.
+     * @param reproducibleDateTime the date/time used in the stripped files.
+     * @return the zip stripper.
+     */
+    private DefaultZipStripper createZipStripper(LocalDateTime reproducibleDateTime)
+    {
+        final ZipStripper.Builder builder = ZipStripper.builder()
+                .zipDateTime(reproducibleDateTime)
+                .fixZipExternalFileAttributes(fixZipExternalFileAttributes);
+        newLineTextFiles.forEach(f -> builder.addFileStripper(f, LineEndingsStripper.INSTANCE));
+        if (this.nestedIncludes != null && !this.nestedIncludes.isEmpty())
+        {
+            for (final String include : this.nestedIncludes)
             {
-                final Stripper nestedFileStripper =
-                        new DefaultZipStripper(zipStripper, this.manifestAttributes);
-                for (final String include : this.nestedIncludes)
+                if (include.endsWith("jar") || include.endsWith("zip"))
                 {
-                    if (include.endsWith("jar") || include.endsWith("zip"))
-                    {
-                        zipStripper.addFileStripper(include, nestedFileStripper);
-                    }
+                    builder.addNestedArchiveStripper(include);
                 }
             }
+            // The zip stripper is reused by the next executions of the session: it must not refer to this one
+            final StripCache nestedStripCache = this.stripCache;
+            final RemoteStripCache nestedRemoteStripCache = this.remoteStripCache;
+            final String fingerprint = this.cacheFingerprint;
+            builder.nestedArchiveDecorator(
+                stripper -> cached(nestedStripCache, nestedRemoteStripCache, fingerprint, stripper));
+            if (this.nestedArchiveCacheMaxSize > 0)
+            {
+                builder.nestedArchiveCache(SessionState.of(this.session).getNestedArchiveCache(
+                        this.nestedArchiveCacheMaxSize), this.cacheFingerprint);
+            }
+        }
+        return new DefaultZipStripper(builder, this.manifestAttributes);
+    }
+
+    private static long parseSize(String size, String name) throws MojoExecutionException
+    {
+        try
+        {
+            return MemoryBudget.parseSize(size);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new MojoExecutionException("Invalid " + name + ": " + size, e);
+        }
+    }
+
+    /**
+     * Decorates a stripper with the caches of the stripped files of this execution, if enabled.
+     * @param stripper the stripper.
+     * @return the decorated stripper.
+     */
+    private Stripper cached(Stripper stripper)
+    {
+        return cached(stripCache, remoteStripCache, cacheFingerprint, stripper);
+    }
+
+    /**
+     * Decorates a stripper with caches of the stripped files, if enabled.
+     * @param localCache the local cache (may be null).
+     * @param remoteCache the remote cache (may be null).
+     * @param fingerprint the fingerprint of the configuration of the stripper.
+     * @param stripper the stripper.
+     * @return the decorated stripper.
+     */
+    private static Stripper cached(StripCache localCache, RemoteStripCache remoteCache, String fingerprint,
+            Stripper stripper)
+    {
+        return localCache != null || remoteCache != null
+                ? new CachingStripper(localCache, remoteCache, fingerprint, stripper) : stripper;
+    }
+
+    /**
+     * Evicts the least recently used files from the cache, if enabled.
+     */
+    private void evictCache()
+    {
+        if (stripCache == null)
+        {
+            return;
+        }
+        try
+        {
+            stripCache.evict();
+        }
+        catch (IOException e)
+        {
+            getLog().warn("Cannot evict files from " + cacheDirectory.getAbsolutePath(), e);
+        }
+    }
 
-            this.process(
-                this.findZipFiles(this.outputDirectory),
-                stripper
-            );
-            this.process(
-                this.findSpringBootExecutable(this.outputDirectory),
-                new OverwriteStripper(this.overwrite,
-                        new SpringBootExecutableStripper(
-                                new DefaultZipStripper(zipStripper, this.manifestAttributes)))
-            );
-            this.process(
-                this.findArchiveFiles(this.outputDirectory),
-                        new OverwriteStripper(this.overwrite, new SmartArchiveStripper(reproducibleDateTime))
-            );
+    /**
+     * Deletes the workspace of this execution.
+     * @param workspace the workspace.
+     */
+    private void closeWorkspace(TempWorkspace workspace)
+    {
+        try
+        {
+            workspace.close();
+        }
+        catch (IOException e)
+        {
+            getLog().warn("Cannot delete the temporary files in " + tempDirectory.getAbsolutePath(), e);
         }
     }
 
     /**
-     * Perform the actual stripping for a set of files using the supplied
+     * Configures the buffers of the copies.
+     * @throws MojoExecutionException if the size of the buffers is invalid.
+     */
+    private void configureCopyBuffers() throws MojoExecutionException
+    {
+        final long size = parseSize(copyBufferSize, "copy buffer size");
+        if (size <= 0 || size > Integer.MAX_VALUE)
+        {
+            throw new MojoExecutionException("Invalid copy buffer size: " + copyBufferSize);
+        }
+        CopyBuffers.INSTANCE.configure((int) size, directCopyBuffers);
+    }
+
+    /**
+     * Creates the scope of this execution in the memory budget of the session.
+     * @throws MojoExecutionException if the budget is invalid.
+     */
+    private void applyMemoryBudget() throws MojoExecutionException
+    {
+        final long limit;
+        try
+        {
+            limit = MemoryBudget.parseLimit(memoryBudget);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new MojoExecutionException("Invalid memory budget: " + memoryBudget, e);
+        }
+        this.memory = SessionState.of(this.session).getMemoryBudget(limit).newScope();
+    }
+
+    /**
+     * Displays the statistics of the stripping of the artifacts and writes them in the report file.
+     */
+    private void report()
+    {
+        if (reports.isEmpty())
+        {
+            return;
+        }
+        StripReport.summaryTable(reports).forEach(line -> getLog().info(line));
+        if (reportFile != null)
+        {
+            try
+            {
+                StripReport.writeJson(reports, reportFile);
+            }
+            catch (IOException e)
+            {
+                getLog().warn("Cannot write " + reportFile.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Perform the actual stripping of a file using the supplied
      * Stripper implementation.
-     * @param files The files to process.
+     * @param file The file to process.
      * @param stripper The stripper to use.
      * @throws MojoExecutionException On error.
      */
-    private void process(final File[] files, final Stripper stripper) throws MojoExecutionException
+    private void process(final File file, final Stripper stripper) throws MojoExecutionException
     {
-        for (final File file : files)
+        this.getLog().info("Stripping " + file.getAbsolutePath());
+        final File strippedFile = this.createStrippedFilename(file);
+        final StripReport report = StripReport.start(file);
+        try (StripEvents.Event event = StripEvents.INSTANCE.artifactStrip(file))
         {
-            this.getLog().info("Stripping " + file.getAbsolutePath());
             try
             {
-                stripper.strip(file, this.createStrippedFilename(file));
+                stripper.strip(file, strippedFile);
             }
             catch (final IOException ioe)
             {
@@ -209,68 +631,101 @@ public final class StripJarMojo extends AbstractMojo
                     ioe
                 );
             }
+            finally
+            {
+                report.finish(strippedFile);
+                event.end(report.getBytesIn(), report.getBytesOut());
+            }
         }
+        reports.add(report);
+        StripStatistics.INSTANCE.artifactStripped(report.getBytesIn(), report.getWallTimeNanos());
     }
 
-    private File[] findZipFiles(final File folder)
+    private File createStrippedFilename(final File originalFile)
     {
-        final PatternFileNameFilter filter =
-                PatternFileNameFilter.of(this.getLog(), this.includes, this.excludes, ZIP_EXT);
-
-        final File[] zipFiles = folder.listFiles((dir, name) ->
-                filter.accept(dir, name)
-                && new File(dir, name).isFile()
-                && Arrays.equals(getFileHeader(new File(dir, name), ZIP_FILE_HEADER.length),
-                                ZIP_FILE_HEADER));
-        return zipFiles != null ? zipFiles : new File[0];
+        final String filenameWithoutExt = FileUtils.getNameWithoutExtension(originalFile);
+        final String ext = FileUtils.getFileExtension(originalFile);
+        return new File(originalFile.getParentFile(), filenameWithoutExt + "-stripped"
+                + (ext.isEmpty() ? "" : ".") + ext);
     }
 
     /**
-     * Finds JAR/WAR/ZIP files repackaged by the spring-boot-maven-plugin plugin.
+     * Artifact to strip, with the stripper configured by the execution that found it.
      */
-    private File[] findSpringBootExecutable(final File folder)
+    static final class StripTask
     {
-        final PatternFileNameFilter filter =
-                PatternFileNameFilter.of(this.getLog(), this.includes, this.excludes, ZIP_EXT);
-
-        final File[] zipFiles = folder.listFiles((dir, name) ->
-                filter.accept(dir, name)
-                && new File(dir, name).isFile()
-                && Arrays.equals(getFileHeader(new File(dir, name), SPRING_BOOT_EXEC_HEADER.length),
-                        SPRING_BOOT_EXEC_HEADER));
-        return zipFiles != null ? zipFiles : new File[0];
-    }
+        private final StripJarMojo mojo;
+        private final File file;
+        private final Stripper stripper;
 
-    private byte[] getFileHeader(final File file, final int length)
-    {
-        final byte[] header = new byte[length];
-        try (FileInputStream is = new FileInputStream(file))
+        /**
+         * Constructor.
+         * @param mojo the execution that found the artifact.
+         * @param file the artifact.
+         * @param stripper the stripper of the artifact.
+         */
+        StripTask(StripJarMojo mojo, File file, Stripper stripper)
         {
-            if (is.read(header) != length)
-            {
-                return null;
-            }
+            this.mojo = mojo;
+            this.file = file;
+            this.stripper = stripper;
         }
-        catch (final IOException e)
+
+        /**
+         * Gets the artifact to strip.
+         * @return the artifact.
+         */
+        File getFile()
         {
-            return null;
+            return file;
         }
-        return header;
-    }
 
-    private File[] findArchiveFiles(final File folder)
-    {
-        final PatternFileNameFilter filter =
-                PatternFileNameFilter.of(this.getLog(), this.includes, this.excludes, ARCHIVE_EXT);
-        final File[] archiveFiles = folder.listFiles(filter);
-        return archiveFiles != null ? archiveFiles : new File[0];
-    }
+        /**
+         * Strips the artifact, in the temporary workspace of the current thread.
+         * @throws MojoExecutionException if the artifact cannot be stripped.
+         */
+        void strip() throws MojoExecutionException
+        {
+            // The artifacts of all the executions are not stripped at the same time, so that the machine is not
+            // oversubscribed (e.g. in a parallel build)
+            final ConcurrencyGovernor.Permit permit;
+            try
+            {
+                permit = mojo.governor.cpu();
+            }
+            catch (final InterruptedIOException e)
+            {
+                throw new MojoExecutionException("Interrupted while waiting to strip " + file.getAbsolutePath(), e);
+            }
+            final ConcurrencyGovernor previous = ConcurrencyGovernor.bind(mojo.governor);
+            final MemoryBudget previousMemory = MemoryBudget.bind(mojo.memory);
+            try
+            {
+                mojo.process(file, stripper);
+            }
+            finally
+            {
+                MemoryBudget.bind(previousMemory);
+                ConcurrencyGovernor.bind(previous);
+                permit.close();
+            }
+        }
 
-    private File createStrippedFilename(final File originalFile)
-    {
-        final String filenameWithoutExt = FileUtils.getNameWithoutExtension(originalFile);
-        final String ext = FileUtils.getFileExtension(originalFile);
-        return new File(originalFile.getParentFile(), filenameWithoutExt + "-stripped"
-                + (ext.isEmpty() ? "" : ".") + ext);
+        /**
+         * Strips the artifact in its own temporary workspace, e.g. in a thread of a pool.
+         * @throws MojoExecutionException if the artifact cannot be stripped.
+         */
+        void stripInWorkspace() throws MojoExecutionException
+        {
+            final TempWorkspace workspace = TempWorkspace.open(mojo.tempDirectory);
+            try
+            {
+                strip();
+            }
+            finally
+            {
+                mojo.closeWorkspace(workspace);
+            }
+        }
     }
 }
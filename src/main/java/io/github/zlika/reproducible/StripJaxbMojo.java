@@ -16,14 +16,27 @@ package io.github.zlika.reproducible;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -37,11 +50,6 @@ import org.apache.maven.plugins.annotations.Parameter;
 @Mojo(name = "strip-jaxb", defaultPhase = LifecyclePhase.PROCESS_SOURCES, threadSafe = true)
 public final class StripJaxbMojo extends AbstractMojo
 {
-    private static final int JAXB_FILE_JAXB_COMMENT_LINE_NUMBER = 1;
-    private static final int JAXB_FILE_TIMESTAMP_LINE_NUMBER = 4;
-    private static final int JAXB_EPISODE_JAXB_COMMENT_LINE_NUMBER = 4;
-    private static final int JAXB_EPISODE_TIMESTAMP_LINE_NUMBER = 7;
-
     /**
      * Defines the supported XJC implementations.
      */
@@ -116,6 +124,50 @@ public final class StripJaxbMojo extends AbstractMojo
     @Parameter(defaultValue = "CRLF", property = "reproducible.lineSeparator")
     private LineSeparators lineSeparator;
 
+    /**
+     * If true, only the files that are new or that have been modified since the previous execution
+     * of the goal are processed. The files already processed are listed in {@code incrementalStateFile}.
+     */
+    @Parameter(defaultValue = "true", property = "reproducible.incremental")
+    private boolean incremental;
+
+    /**
+     * File listing the files already processed (with their size, modification time and content hash),
+     * used when {@code incremental} is true.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/maven-status/reproducible-build/strip-jaxb.lst",
+            property = "reproducible.incrementalStateFile")
+    private File incrementalStateFile;
+
+    /**
+     * Maximum heap memory used by the buffers of the plugin (a number of bytes, with an optional
+     * "k", "m" or "g" suffix), shared by all the executions of the plugin in the build.
+     * Above this budget, the data is spilled in temporary files, or the processing is delayed.
+     * By default, a quarter of the maximum heap size. The budget is set by the first execution of the plugin
+     * in the build.
+     */
+    @Parameter(property = "reproducible.memoryBudget")
+    private String memoryBudget;
+
+    /**
+     * Maximum number of threads normalizing files or stripping artifacts at the same time (CPU-heavy tasks),
+     * shared by all the executions of the plugin in the build. By default, the number of processors.
+     * The limits are set by the first execution of the plugin in the build.
+     */
+    @Parameter(defaultValue = "0", property = "reproducible.cpuPermits")
+    private int cpuPermits;
+
+    /**
+     * Maximum number of disk-heavy tasks running at the same time, shared by all the executions
+     * of the plugin in the build. By default, 4. The limits are set by the first execution of the plugin
+     * in the build.
+     */
+    @Parameter(defaultValue = "0", property = "reproducible.ioPermits")
+    private int ioPermits;
+
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
     @Override
     public void execute() throws MojoExecutionException
     {
@@ -125,104 +177,202 @@ public final class StripJaxbMojo extends AbstractMojo
         }
         else
         {
-            fix();
+            final MemoryBudget memory = createMemoryBudget();
+            fix(memory);
+            getLog().info(memory.describePeak());
+        }
+    }
+
+    /**
+     * Creates the scope of this execution in the memory budget of the session.
+     * @return the scope.
+     * @throws MojoExecutionException if the budget is invalid.
+     */
+    private MemoryBudget createMemoryBudget() throws MojoExecutionException
+    {
+        final long limit;
+        try
+        {
+            limit = MemoryBudget.parseLimit(memoryBudget);
         }
+        catch (IllegalArgumentException e)
+        {
+            throw new MojoExecutionException("Invalid memory budget: " + memoryBudget, e);
+        }
+        return SessionState.of(session).getMemoryBudget(limit).newScope();
     }
     
-    private void fix() throws MojoExecutionException
+    private void fix(MemoryBudget memory) throws MojoExecutionException
     {
         if (!generatedDirectory.exists() || !generatedDirectory.isDirectory())
         {
             return;
         }
-        final Charset charset = Charset.forName(encoding);
-        final JaxbObjectFactoryFixer objectFactoryFixer = new JaxbObjectFactoryFixer(getMatchingCommentTexts(),
-                charset);
-        final LineNumberStripper jaxbFileDateStripper =
-            new LineNumberStripper(JAXB_FILE_TIMESTAMP_LINE_NUMBER, lineSeparator);
-        final LineNumberStripper jaxbEpisodeDateStripper =
-            new LineNumberStripper(JAXB_EPISODE_TIMESTAMP_LINE_NUMBER, lineSeparator);
-        final File tmpFile = createTempFile();
+        final List<String> matchingCommentTexts = getMatchingCommentTexts();
+        final JaxbFileNormalizer normalizer =
+                new JaxbFileNormalizer(matchingCommentTexts, Charset.forName(encoding), lineSeparator)
+                    .setFixJaxbOrder(fixJaxbOrder)
+                    .setRemoveJaxbTimestamps(removeJaxbTimestamps);
+        final ProcessedFilesManifest manifest = incremental ? ProcessedFilesManifest.load(
+                incrementalStateFile.toPath(), generatedDirectory.toPath(), getFingerprint(matchingCommentTexts))
+                : null;
         
-        try
+        final Queue<Map.Entry<Path, BasicFileAttributes>> files = new ConcurrentLinkedQueue<>(findFiles().entrySet());
+        final LongAdder upToDateFiles = new LongAdder();
+        // The files are independent from each other, so they are processed in parallel
+        normalizeAll(() ->
         {
-            Files.walk(generatedDirectory.toPath())
-                .filter(Files::isRegularFile)
-                .forEach(f ->
+            Map.Entry<Path, BasicFileAttributes> e;
+            while (!Thread.currentThread().isInterrupted() && (e = files.poll()) != null)
+            {
+                try
                 {
-                    try
-                    {
-                        final List<String> lines = Files.readAllLines(f, charset);
-                        // We cannot rely on an exact comment text to check if it is a JAXB generated file
-                        // because it depends on the current locale
-                        final boolean isJaxbFile = isJaxbFile(lines);
-                        final boolean isObjectFactoryFile = isJaxbFile
-                                && "ObjectFactory.java".equals(f.toFile().getName());
-                        final boolean isEpisodeFile = isEpisodeFile(f.toFile().getName(), lines);
-                                        
-                        if (isObjectFactoryFile || isJaxbFile || isEpisodeFile)
-                        {
-                            getLog().info("Stripping " + f.toFile().getAbsolutePath());
-                            if (isObjectFactoryFile && fixJaxbOrder)
-                            {
-                                objectFactoryFixer.strip(f.toFile(), tmpFile);
-                                Files.move(tmpFile.toPath(), f, StandardCopyOption.REPLACE_EXISTING);
-                            }
-                            if (isJaxbFile && removeJaxbTimestamps)
-                            {
-                                jaxbFileDateStripper.strip(f.toFile(), tmpFile);
-                                Files.move(tmpFile.toPath(), f, StandardCopyOption.REPLACE_EXISTING);
-                            }
-                            if (isEpisodeFile && removeJaxbTimestamps)
-                            {
-                                jaxbEpisodeDateStripper.strip(f.toFile(), tmpFile);
-                                Files.move(tmpFile.toPath(), f, StandardCopyOption.REPLACE_EXISTING);
-                            }
-                        }
-                    }
-                    catch (IOException e)
+                    if (!normalize(e.getKey(), e.getValue(), normalizer, manifest))
                     {
-                        getLog().error("Error when normalizing " + f.toFile().getAbsolutePath(), e);
+                        upToDateFiles.increment();
                     }
-                });
-        }
-        catch (IOException e)
+                }
+                catch (IOException ex)
+                {
+                    getLog().error("Error when normalizing " + e.getKey().toFile().getAbsolutePath(), ex);
+                }
+            }
+            return null;
+        }, files.size(), memory);
+        
+        if (manifest != null)
         {
-            throw new MojoExecutionException("Error when visiting " + generatedDirectory.getAbsolutePath(), e);
+            getLog().debug(upToDateFiles.sum() + " file(s) already normalized");
+            saveManifest(manifest);
         }
     }
     
-    private boolean isJaxbFile(List<String> lines)
+    /**
+     * Runs the workers normalizing the files on helper threads: one with the CPU permit of this execution,
+     * and one more for each CPU permit available.
+     * @param worker the worker, normalizing files until there is none left.
+     * @param fileCount the number of files.
+     * @param memory the memory budget of this execution.
+     */
+    private void normalizeAll(Callable<Void> worker, int fileCount, MemoryBudget memory)
+            throws MojoExecutionException
     {
-        return lines.size() > JAXB_FILE_TIMESTAMP_LINE_NUMBER
-                && lines.get(0).equals("//")
-                && getMatchingCommentTexts().stream().anyMatch(lines.get(JAXB_FILE_JAXB_COMMENT_LINE_NUMBER)::contains)
-                && lines.get(JAXB_FILE_TIMESTAMP_LINE_NUMBER).contains(":");
+        final ConcurrencyGovernor governor = SessionState.of(session).getConcurrencyGovernor(cpuPermits, ioPermits);
+        final ConcurrencyGovernor.Permit permit;
+        try
+        {
+            permit = governor.cpu();
+        }
+        catch (InterruptedIOException e)
+        {
+            throw new MojoExecutionException("Interrupted while waiting to normalize the files", e);
+        }
+        final ConcurrencyGovernor.Permit helperPermits = governor.tryCpu(fileCount - 1);
+        final List<Future<Void>> workers = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i <= helperPermits.getCount(); i++)
+            {
+                workers.add(governor.getExecutor().submit(governor.bound(memory.bound(worker))));
+            }
+            // The permits are released once all the workers are finished
+            ExecutionException failure = null;
+            for (final Future<Void> future : workers)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    failure = failure != null ? failure : e;
+                }
+            }
+            if (failure != null)
+            {
+                throw new MojoExecutionException("Error when normalizing the files", failure.getCause());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            workers.forEach(future -> future.cancel(true));
+            throw new MojoExecutionException("Interrupted while normalizing the files", e);
+        }
+        finally
+        {
+            helperPermits.close();
+            permit.close();
+        }
+    }
+
+    /**
+     * Normalizes a file if it is not up-to-date.
+     * @return false if the file is up-to-date.
+     */
+    private boolean normalize(Path file, BasicFileAttributes attributes, JaxbFileNormalizer normalizer,
+            ProcessedFilesManifest manifest) throws IOException
+    {
+        if (manifest != null && manifest.isUpToDate(file, attributes))
+        {
+            return false;
+        }
+        if ((manifest != null ? normalizer.normalize(file, attributes, manifest) : normalizer.normalize(file))
+                == JaxbFileNormalizer.Result.NORMALIZED)
+        {
+            getLog().info("Stripping " + file.toFile().getAbsolutePath());
+        }
+        return true;
     }
     
-    private boolean isEpisodeFile(String filename, List<String> lines)
+    private void saveManifest(ProcessedFilesManifest manifest)
     {
-        return filename.endsWith(".episode")
-                && lines.size() > JAXB_EPISODE_TIMESTAMP_LINE_NUMBER
-                && getMatchingCommentTexts().stream()
-                .anyMatch(lines.get(JAXB_EPISODE_JAXB_COMMENT_LINE_NUMBER)::contains)
-                && lines.get(JAXB_EPISODE_TIMESTAMP_LINE_NUMBER).contains(":");
+        try
+        {
+            manifest.save();
+        }
+        catch (IOException e)
+        {
+            getLog().warn("Cannot save " + incrementalStateFile.getAbsolutePath(), e);
+        }
     }
-
-    private File createTempFile() throws MojoExecutionException
+    
+    private Map<Path, BasicFileAttributes> findFiles() throws MojoExecutionException
     {
+        final Map<Path, BasicFileAttributes> files = new LinkedHashMap<>();
         try
         {
-            final File out = File.createTempFile("ObjectFactory", null);
-            out.deleteOnExit();
-            return out;
+            Files.walkFileTree(generatedDirectory.toPath(), new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                {
+                    if (attrs.isRegularFile())
+                    {
+                        files.put(file, attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
         }
         catch (IOException e)
         {
-            throw new MojoExecutionException("Cannot create temp file", e);
+            throw new MojoExecutionException("Error when visiting " + generatedDirectory.getAbsolutePath(), e);
         }
+        return files;
     }
-
+    
+    /**
+     * Identifies the configuration of the goal: files normalized with another configuration
+     * must be processed again.
+     */
+    private String getFingerprint(List<String> matchingCommentTexts)
+    {
+        return String.join("|", "v1", generatedDirectory.getAbsolutePath(), encoding,
+                String.valueOf(fixJaxbOrder), String.valueOf(removeJaxbTimestamps), lineSeparator.name(),
+                String.join("|", matchingCommentTexts));
+    }
+    
     private List<String> getMatchingCommentTexts()
     {
         ArrayList<String> matchingCommentTexts = Arrays.stream(XjcGenerator.values())
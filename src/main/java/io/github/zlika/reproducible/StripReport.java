@@ -0,0 +1,302 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics about the stripping of an artifact (timings, sizes, entries...).
+ * The report of the artifact being stripped is bound to the current thread by {@link #start(File)},
+ * so that the strippers can record their statistics with the static methods of this class
+ * without having to pass the report around. These methods do nothing when no report is started
+ * (for instance when the strippers are used outside of a Maven goal).
+ * The entries of the nested archives are counted with the entries of the artifact,
+ * and the time spent in a sub-stripper includes the time spent in its own sub-strippers.
+ */
+final class StripReport
+{
+    private static final ThreadLocal<StripReport> CURRENT = new ThreadLocal<>();
+    private static final String TABLE_FORMAT = "%-40s %10s %12s %12s %8s %8s %12s %12s %12s";
+    private static final int MAX_NAME_LENGTH = 40;
+
+    private final File artifact;
+    private final long startNanos;
+    private final long bytesIn;
+    private long wallTimeNanos;
+    private long bytesOut;
+    private long entries;
+    private long rawCopiedEntries;
+    private long recompressedEntries;
+    private long nestedArchiveNanos;
+    private long tempDiskBytes;
+    private final Map<String, Long> subStripperNanos = new TreeMap<>();
+
+    private StripReport(File artifact)
+    {
+        this.artifact = artifact;
+        this.startNanos = System.nanoTime();
+        this.bytesIn = artifact.length();
+    }
+
+    /**
+     * Starts the report of an artifact and binds it to the current thread.
+     * @param artifact the artifact to strip.
+     * @return the report.
+     */
+    static StripReport start(File artifact)
+    {
+        final StripReport report = new StripReport(artifact);
+        CURRENT.set(report);
+        return report;
+    }
+
+    /**
+     * Ends the report and unbinds it from the current thread.
+     * @param stripped the stripped artifact (the artifact itself when it is overwritten).
+     */
+    void finish(File stripped)
+    {
+        wallTimeNanos = System.nanoTime() - startNanos;
+        bytesOut = (stripped.exists() ? stripped : artifact).length();
+        CURRENT.remove();
+    }
+
+    /**
+     * Records an entry copied without being decompressed.
+     */
+    static void rawCopiedEntry()
+    {
+        final StripReport report = CURRENT.get();
+        if (report != null)
+        {
+            report.entries++;
+            report.rawCopiedEntries++;
+        }
+    }
+
+    /**
+     * Records an entry whose content has been read and written again (to be stripped),
+     * which requires to compress it again for compressed archives.
+     */
+    static void recompressedEntry()
+    {
+        final StripReport report = CURRENT.get();
+        if (report != null)
+        {
+            report.entries++;
+            report.recompressedEntries++;
+        }
+    }
+
+    /**
+     * Records the time spent in a sub-stripper (a stripper of the entries of an archive),
+     * also in the {@link StripStatistics}.
+     * @param stripper the sub-stripper.
+     * @param startNanos the value of {@link System#nanoTime()} before the sub-stripper was called.
+     * @param nestedArchive true if the sub-stripper processes a nested archive.
+     */
+    static void subStripper(Stripper stripper, long startNanos, boolean nestedArchive)
+    {
+        final long nanos = System.nanoTime() - startNanos;
+        StripStatistics.INSTANCE.stripperExecuted(stripper, nanos);
+        final StripReport report = CURRENT.get();
+        if (report != null)
+        {
+            report.subStripperNanos.merge(stripper.getClass().getSimpleName(), nanos, Long::sum);
+            if (nestedArchive)
+            {
+                report.nestedArchiveNanos += nanos;
+            }
+        }
+    }
+
+    /**
+     * Records the bytes written in temporary files.
+     * @param file the temporary file, once written.
+     */
+    static void tempFile(File file)
+    {
+        final StripReport report = CURRENT.get();
+        if (report != null)
+        {
+            report.tempDiskBytes += file.length();
+        }
+    }
+
+    /**
+     * Records the bytes written in temporary files.
+     * @param bytes the number of bytes.
+     */
+    static void tempDiskBytes(long bytes)
+    {
+        final StripReport report = CURRENT.get();
+        if (report != null)
+        {
+            report.tempDiskBytes += bytes;
+        }
+    }
+
+    File getArtifact()
+    {
+        return artifact;
+    }
+
+    long getWallTimeNanos()
+    {
+        return wallTimeNanos;
+    }
+
+    long getBytesIn()
+    {
+        return bytesIn;
+    }
+
+    long getBytesOut()
+    {
+        return bytesOut;
+    }
+
+    long getEntries()
+    {
+        return entries;
+    }
+
+    long getRawCopiedEntries()
+    {
+        return rawCopiedEntries;
+    }
+
+    long getRecompressedEntries()
+    {
+        return recompressedEntries;
+    }
+
+    long getNestedArchiveNanos()
+    {
+        return nestedArchiveNanos;
+    }
+
+    long getTempDiskBytes()
+    {
+        return tempDiskBytes;
+    }
+
+    Map<String, Long> getSubStripperNanos()
+    {
+        return subStripperNanos;
+    }
+
+    /**
+     * Writes reports in a JSON file.
+     * @param reports the reports.
+     * @param file the JSON file.
+     * @throws IOException On error.
+     */
+    static void writeJson(List<StripReport> reports, File file) throws IOException
+    {
+        FileUtils.mkdirs(file.getParentFile());
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            writer.write("{\n  \"artifacts\": [");
+            for (int i = 0; i < reports.size(); i++)
+            {
+                writer.write(i == 0 ? "\n" : ",\n");
+                reports.get(i).writeJson(writer);
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    private void writeJson(Writer writer) throws IOException
+    {
+        writer.write("    {\n      \"artifact\": " + quote(artifact.getAbsolutePath())
+                + ",\n      \"wallTimeMs\": " + toMillis(wallTimeNanos)
+                + ",\n      \"bytesIn\": " + bytesIn
+                + ",\n      \"bytesOut\": " + bytesOut
+                + ",\n      \"entries\": " + entries
+                + ",\n      \"rawCopiedEntries\": " + rawCopiedEntries
+                + ",\n      \"recompressedEntries\": " + recompressedEntries
+                + ",\n      \"nestedArchiveTimeMs\": " + toMillis(nestedArchiveNanos)
+                + ",\n      \"tempDiskBytes\": " + tempDiskBytes
+                + ",\n      \"subStripperTimeMs\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Long> subStripper : subStripperNanos.entrySet())
+        {
+            writer.write(separator + "        " + quote(subStripper.getKey()) + ": "
+                    + toMillis(subStripper.getValue()));
+            separator = ",\n";
+        }
+        writer.write(subStripperNanos.isEmpty() ? "}\n    }" : "\n      }\n    }");
+    }
+
+    /**
+     * Formats reports as a table, to be displayed in the Maven log.
+     * @param reports the reports.
+     * @return the lines of the table.
+     */
+    static List<String> summaryTable(List<StripReport> reports)
+    {
+        final List<String> lines = new ArrayList<>();
+        lines.add(String.format(TABLE_FORMAT, "Artifact", "Time (ms)", "In (KiB)", "Out (KiB)", "Entries",
+                "Raw", "Recompressed", "Nested (ms)", "Temp (KiB)"));
+        for (StripReport report : reports)
+        {
+            String name = report.artifact.getName();
+            if (name.length() > MAX_NAME_LENGTH)
+            {
+                name = "..." + name.substring(name.length() - MAX_NAME_LENGTH + 3);
+            }
+            lines.add(String.format(TABLE_FORMAT, name, toMillis(report.wallTimeNanos),
+                    report.bytesIn / 1024, report.bytesOut / 1024, report.entries, report.rawCopiedEntries,
+                    report.recompressedEntries, toMillis(report.nestedArchiveNanos), report.tempDiskBytes / 1024));
+        }
+        return lines;
+    }
+
+    private static long toMillis(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static String quote(String value)
+    {
+        final StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray())
+        {
+            if (c == '"' || c == '\\')
+            {
+                builder.append('\\').append(c);
+            }
+            else if (c < ' ')
+            {
+                builder.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cumulative statistics of the plugin, registered in the platform MBean server when this class is loaded.
+ * The counters are lock-free, so that they can be updated concurrently by the strippers
+ * without slowing them down.
+ */
+final class StripStatistics implements StripStatisticsMXBean
+{
+    /** Name of the MBean. */
+    static final String OBJECT_NAME = "io.github.zlika.reproducible:type=StripStatistics";
+    /** Key of the latency histogram of the stripping of whole artifacts. */
+    static final String ARTIFACT = "Artifact";
+    /** The statistics of the plugin. */
+    static final StripStatistics INSTANCE = register(new StripStatistics());
+
+    private final long[] latencyBucketsMillis = { 1, 10, 100, 1000, 10000 };
+    private final LongAdder artifactsStripped = new LongAdder();
+    private final LongAdder bytesProcessed = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder tempFilesCreated = new LongAdder();
+    private final LongAdder tempFilesDeleted = new LongAdder();
+    private final ConcurrentMap<String, LongAdder[]> latencyHistograms = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the statistics in the platform MBean server.
+     * The MBean registered by a previous class loader of the plugin (e.g. when a daemon reloads
+     * a new version of the plugin) is replaced, so that it does not keep that class loader alive.
+     */
+    private static StripStatistics register(StripStatistics statistics)
+    {
+        try
+        {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+            {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(statistics, name);
+        }
+        catch (JMException | SecurityException e)
+        {
+            // The statistics are still collected, but they are not visible with JMX
+        }
+        return statistics;
+    }
+
+    /**
+     * Records the stripping of an artifact.
+     * @param bytes the size of the artifact.
+     * @param nanos the time spent to strip the artifact.
+     */
+    void artifactStripped(long bytes, long nanos)
+    {
+        artifactsStripped.increment();
+        bytesProcessed.add(bytes);
+        latency(ARTIFACT, nanos);
+    }
+
+    /**
+     * Records the execution of a stripper.
+     * @param stripper the stripper.
+     * @param nanos the execution time of the stripper.
+     */
+    void stripperExecuted(Stripper stripper, long nanos)
+    {
+        latency(stripper.getClass().getSimpleName(), nanos);
+    }
+
+    /**
+     * Records a cache hit.
+     */
+    void cacheHit()
+    {
+        cacheHits.increment();
+    }
+
+    /**
+     * Records a cache miss.
+     */
+    void cacheMiss()
+    {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Records the creation of a temporary file (or directory).
+     */
+    void tempFileCreated()
+    {
+        tempFilesCreated.increment();
+    }
+
+    /**
+     * Records the deletion of a temporary file (or directory).
+     */
+    void tempFileDeleted()
+    {
+        tempFilesDeleted.increment();
+    }
+
+    private void latency(String type, long nanos)
+    {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < latencyBucketsMillis.length && millis >= latencyBucketsMillis[bucket])
+        {
+            bucket++;
+        }
+        latencyHistograms.computeIfAbsent(type, t -> newHistogram())[bucket].increment();
+    }
+
+    private LongAdder[] newHistogram()
+    {
+        final LongAdder[] histogram = new LongAdder[latencyBucketsMillis.length + 1];
+        Arrays.setAll(histogram, i -> new LongAdder());
+        return histogram;
+    }
+
+    @Override
+    public long getArtifactsStripped()
+    {
+        return artifactsStripped.sum();
+    }
+
+    @Override
+    public long getBytesProcessed()
+    {
+        return bytesProcessed.sum();
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getTempFilesCreated()
+    {
+        return tempFilesCreated.sum();
+    }
+
+    @Override
+    public long getTempFilesOutstanding()
+    {
+        // Read the deletions first, so that a concurrent creation and deletion is never seen as negative
+        final long deleted = tempFilesDeleted.sum();
+        return tempFilesCreated.sum() - deleted;
+    }
+
+    @Override
+    public long[] getLatencyBucketsMillis()
+    {
+        return latencyBucketsMillis.clone();
+    }
+
+    @Override
+    public Map<String, long[]> getLatencyHistograms()
+    {
+        final Map<String, long[]> histograms = new TreeMap<>();
+        latencyHistograms.forEach((type, histogram) ->
+                histograms.put(type, Arrays.stream(histogram).mapToLong(LongAdder::sum).toArray()));
+        return histograms;
+    }
+}
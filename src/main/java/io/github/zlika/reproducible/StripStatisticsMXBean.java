@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.util.Map;
+
+/**
+ * Cumulative statistics of the plugin since it has been loaded, exposed with JMX
+ * under the name {@value StripStatistics#OBJECT_NAME}.
+ * They are useful when the plugin stays loaded across many builds (e.g. with the Maven daemon).
+ */
+public interface StripStatisticsMXBean
+{
+    /**
+     * Gets the number of artifacts stripped.
+     * @return the number of artifacts stripped.
+     */
+    long getArtifactsStripped();
+
+    /**
+     * Gets the size (in bytes) of the artifacts stripped.
+     * @return the size (in bytes) of the artifacts stripped.
+     */
+    long getBytesProcessed();
+
+    /**
+     * Gets the number of stripped artifacts or entries found in a cache.
+     * @return the number of stripped artifacts or entries found in a cache.
+     */
+    long getCacheHits();
+
+    /**
+     * Gets the number of artifacts or entries not found in a cache.
+     * @return the number of artifacts or entries not found in a cache.
+     */
+    long getCacheMisses();
+
+    /**
+     * Gets the number of temporary files created by the strippers.
+     * @return the number of temporary files created by the strippers.
+     */
+    long getTempFilesCreated();
+
+    /**
+     * Gets the number of temporary files created by the strippers and not deleted yet.
+     * @return the number of temporary files created by the strippers and not deleted yet.
+     */
+    long getTempFilesOutstanding();
+
+    /**
+     * Gets the upper bounds (in milliseconds) of the buckets of the latency histograms.
+     * @return the upper bounds (in milliseconds) of the buckets of the latency histograms.
+     */
+    long[] getLatencyBucketsMillis();
+
+    /**
+     * Gets the latency histograms, by stripper type ("Artifact" for the stripping of whole artifacts).
+     * The last bucket of each histogram counts the latencies above the last bound of
+     * {@link #getLatencyBucketsMillis()}.
+     * @return the number of executions of the strippers in each latency bucket, by stripper type.
+     */
+    Map<String, long[]> getLatencyHistograms();
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Directory where the temporary files of an execution of the plugin are created.
+ * The workspace is deleted with all its content when the execution ends, even if a stripper fails,
+ * so that the temporary files do not pile up in long-lived JVMs (e.g. with the Maven daemon)
+ * as they would with {@link File#deleteOnExit()}.
+ * By default, the workspace is located in the build directory, on the same filesystem as the artifacts,
+ * but it can be moved to a faster filesystem (e.g. a tmpfs).
+ * The workspace is bound to the thread executing the plugin: outside of an execution, the temporary files
+ * are created in the default temporary directory.
+ * The directory of the workspace is only created when the first temporary file is needed.
+ */
+final class TempWorkspace implements AutoCloseable
+{
+    private static final ThreadLocal<TempWorkspace> CURRENT = new ThreadLocal<>();
+
+    private final Path parent;
+    private Path directory;
+
+    private TempWorkspace(Path parent)
+    {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a new workspace and binds it to the current thread.
+     * @param parent the directory where the workspace is created (created if it does not exist).
+     * @return the workspace, to be closed at the end of the execution.
+     */
+    static TempWorkspace open(File parent)
+    {
+        final TempWorkspace workspace = new TempWorkspace(parent.toPath());
+        CURRENT.set(workspace);
+        return workspace;
+    }
+
+    /**
+     * Gets the directory of the workspace, creating it if needed.
+     * @return the directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    Path getDirectory() throws IOException
+    {
+        if (directory == null)
+        {
+            Files.createDirectories(parent);
+            directory = Files.createTempDirectory(parent, "workspace-");
+            StripStatistics.INSTANCE.tempFileCreated();
+        }
+        return directory;
+    }
+
+    /**
+     * Unbinds the workspace from the current thread and deletes it with all its content.
+     * @throws IOException if the workspace cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        CURRENT.remove();
+        if (directory != null)
+        {
+            org.codehaus.plexus.util.FileUtils.deleteDirectory(directory.toFile());
+            StripStatistics.INSTANCE.tempFileDeleted();
+        }
+    }
+
+    /**
+     * Creates a temporary file in the workspace of the current thread.
+     * The caller must delete it with {@link #delete(File)}.
+     * @param prefix the prefix of the file name.
+     * @param suffix the suffix of the file name (may be null).
+     * @return the temporary file.
+     * @throws IOException if the file cannot be created.
+     */
+    static File createTempFile(String prefix, String suffix) throws IOException
+    {
+        final TempWorkspace workspace = CURRENT.get();
+        final Path file = workspace != null ? Files.createTempFile(workspace.getDirectory(), prefix, suffix)
+                : Files.createTempFile(prefix, suffix);
+        StripStatistics.INSTANCE.tempFileCreated();
+        return file.toFile();
+    }
+
+    /**
+     * Creates a temporary directory in the workspace of the current thread.
+     * The caller must delete it with {@link #deleteDirectory(Path)}.
+     * @param prefix the prefix of the directory name.
+     * @return the temporary directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    static Path createTempDirectory(String prefix) throws IOException
+    {
+        final TempWorkspace workspace = CURRENT.get();
+        final Path dir = workspace != null ? Files.createTempDirectory(workspace.getDirectory(), prefix)
+                : Files.createTempDirectory(prefix);
+        StripStatistics.INSTANCE.tempFileCreated();
+        return dir;
+    }
+
+    /**
+     * Deletes a temporary file created by {@link #createTempFile(String, String)}.
+     * @param file the file.
+     * @throws IOException if the file cannot be deleted.
+     */
+    static void delete(File file) throws IOException
+    {
+        Files.deleteIfExists(file.toPath());
+        StripStatistics.INSTANCE.tempFileDeleted();
+    }
+
+    /**
+     * Deletes a temporary directory created by {@link #createTempDirectory(String)}, with all its content.
+     * @param dir the directory.
+     * @throws IOException if the directory cannot be deleted.
+     */
+    static void deleteDirectory(Path dir) throws IOException
+    {
+        org.codehaus.plexus.util.FileUtils.deleteDirectory(dir.toFile());
+        StripStatistics.INSTANCE.tempFileDeleted();
+    }
+}
@@ -16,11 +16,10 @@ package io.github.zlika.reproducible;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -30,7 +29,7 @@ import java.util.function.Predicate;
 /**
  * Generic text file stripper.
  */
-class TextFileStripper implements Stripper
+class TextFileStripper implements StreamStripper
 {
     private final List<Predicate<String>> predicates = new ArrayList<>();
     
@@ -46,25 +45,22 @@ class TextFileStripper implements Stripper
     }
     
     @Override
-    public void strip(File in, File out) throws IOException
+    public void strip(InputStream in, OutputStream out) throws IOException
     {
-        try (final BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8));
-            final BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(in), StandardCharsets.UTF_8)))
-        {
-            reader.lines().filter(s -> predicates.stream().allMatch(p -> p.test(s)))
-                        .forEach(s ->
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.lines().filter(s -> predicates.stream().allMatch(p -> p.test(s)))
+                    .forEach(s ->
+                    {
+                        try
                         {
-                            try
-                            {
-                                writer.write(s);
-                                writer.write("\r\n");
-                            }
-                            catch (IOException e)
-                            {
-                            }
-                        });
-        }
+                            writer.write(s);
+                            writer.write("\r\n");
+                        }
+                        catch (IOException e)
+                        {
+                        }
+                    });
+        writer.flush();
     }
 }
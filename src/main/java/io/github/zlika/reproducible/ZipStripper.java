@@ -14,24 +14,27 @@
 
 package io.github.zlika.reproducible;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
 import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
 
 import org.apache.commons.compress.archivers.zip.X000A_NTFS;
 import org.apache.commons.compress.archivers.zip.X5455_ExtendedTimestamp;
+import org.apache.commons.compress.archivers.zip.Zip64ExtendedInformationExtraField;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipExtraField;
@@ -40,6 +43,9 @@ import org.apache.commons.compress.archivers.zip.ZipFile;
 /**
  * Strips non-reproducible data from a ZIP file.
  * It rebuilds the ZIP file with a predictable order for the zip entries and sets zip entry dates to a fixed value.
+ * Instances are created with a {@link Builder} and are immutable: they can be used by several threads
+ * (the instances created with the deprecated constructors can still be modified, with
+ * {@link #addFileStripper(String, Stripper)}).
  */
 public final class ZipStripper implements Stripper
 {
@@ -84,47 +90,110 @@ public final class ZipStripper implements Stripper
         }
     };
     
-    private final Map<String, Stripper> subFilters = new HashMap<>();
-
     private final long zipTimestamp;
     private final boolean fixZipExternalFileAttributes;
+    private final NestedArchiveCache nestedArchiveCache;
+    private final String nestedArchiveFingerprint;
+    /** The builder of the instances created with the deprecated constructors, null otherwise. */
+    private final Builder mutableBuilder;
+    /** The strippers of the files in the Zip, in the order in which they are matched. */
+    private volatile Rule[] rules;
 
     /**
-     * Creates ZipStripper with default timestamp ({@link #DEFAULT_ZIP_TIMESTAMP}) for zip archive entries.
+     * Creates ZipStripper with default timestamp for zip archive entries.
+     * @deprecated Use {@link #builder()}, which creates immutable objects.
      */
+    @Deprecated
     public ZipStripper()
     {
-        zipTimestamp = DEFAULT_ZIP_TIMESTAMP;
-        fixZipExternalFileAttributes = false;
+        this(new Builder(), true);
     }
 
     /**
      * Creates ZipStripper with specified configuration.
-     *.
      * @param zipDateTime date and time for zip archive entries.
      * @param fixZipExternalFileAttributes true to be insensitive to umask setting.
+     * @deprecated Use {@link #builder()}, which creates immutable objects.
      */
+    @Deprecated
     public ZipStripper(LocalDateTime zipDateTime, boolean fixZipExternalFileAttributes)
     {
-        zipTimestamp = zipDateTime.atZone(ZoneOffset.systemDefault()).toInstant().toEpochMilli();
-        this.fixZipExternalFileAttributes = fixZipExternalFileAttributes;
+        this(new Builder().zipDateTime(zipDateTime).fixZipExternalFileAttributes(fixZipExternalFileAttributes),
+                true);
     }
-    
+
+    private ZipStripper(Builder builder, boolean mutable)
+    {
+        zipTimestamp = builder.zipTimestamp;
+        fixZipExternalFileAttributes = builder.fixZipExternalFileAttributes;
+        nestedArchiveCache = builder.nestedArchiveCache;
+        nestedArchiveFingerprint = builder.nestedArchiveFingerprint;
+        mutableBuilder = mutable ? builder : null;
+        rules = createRules(builder);
+    }
+
     /**
-     * Adds a stripper for a given file in the Zip.
+     * Adds a stripper for a given file in the Zip, replacing the stripper previously added for the same name.
      * @param filename the name of the file in the Zip (regular expression).
      * @param stripper the stripper to apply on the file.
      * @return this object (for method chaining).
+     * @throws IllegalStateException if this object has been created by a {@link Builder}.
+     * @deprecated Use {@link Builder#addFileStripper(String, Stripper)}.
      */
+    @Deprecated
     public ZipStripper addFileStripper(String filename, Stripper stripper)
     {
-        subFilters.put(filename, stripper);
+        if (mutableBuilder == null)
+        {
+            throw new IllegalStateException("A ZipStripper created by a builder cannot be modified");
+        }
+        synchronized (mutableBuilder)
+        {
+            final int index = mutableBuilder.filenames.indexOf(filename);
+            if (index >= 0)
+            {
+                mutableBuilder.filenames.remove(index);
+                mutableBuilder.strippers.remove(index);
+                if (index < mutableBuilder.defaultStrippers)
+                {
+                    mutableBuilder.defaultStrippers--;
+                }
+            }
+            mutableBuilder.addFileStripper(filename, stripper);
+            rules = createRules(mutableBuilder);
+        }
         return this;
     }
-    
+
+    private Rule[] createRules(Builder builder)
+    {
+        // The nested archives are stripped by this object itself
+        final Stripper nestedArchiveStripper = builder.nestedArchiveDecorator.apply(this);
+        final Rule[] newRules = new Rule[builder.filenames.size()];
+        for (int i = 0; i < newRules.length; i++)
+        {
+            final Stripper stripper = builder.strippers.get(i);
+            newRules[i] = stripper != null
+                    ? new Rule(builder.filenames.get(i), stripper, isArchiveStripper(stripper))
+                    : new Rule(builder.filenames.get(i), nestedArchiveStripper, true);
+        }
+        return newRules;
+    }
+
+    /**
+     * Creates a builder of ZipStripper.
+     * @return the builder.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
     @Override
     public void strip(File in, File out) throws IOException
     {
+        // Fix external file attributes if required
+        final boolean fixAttributes = in.getName().endsWith(".jar") || in.getName().endsWith(".war");
         try (final ZipFile zip = new ZipFile(in);
              final ZipArchiveOutputStream zout = new ZipArchiveOutputStream(out))
         {
@@ -134,37 +203,139 @@ public final class ZipStripper implements Stripper
                 final ZipArchiveEntry entry = zip.getEntry(name);
                 // Strip Zip entry
                 final ZipArchiveEntry strippedEntry = filterZipEntry(entry);
-                // Fix external file attributes if required
-                if (in.getName().endsWith(".jar") || in.getName().endsWith(".war"))
+                if (fixAttributes)
                 {
                     fixAttributes(strippedEntry);
                 }
                 // Strip file if required
-                final Stripper stripper = getSubFilter(name);
-                if (stripper != null)
+                final Rule rule = getRule(name);
+                if (rule != null)
                 {
-                    final String suffix = name.substring(name.lastIndexOf('.'));
-                    // Unzip entry to temp file
-                    final File tmp = File.createTempFile("tmp", suffix);
-                    tmp.deleteOnExit();
-                    Files.copy(zip.getInputStream(entry), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    final File tmp2 = File.createTempFile("tmp", suffix);
-                    tmp2.deleteOnExit();
-                    stripper.strip(tmp, tmp2);
-                    final byte[] fileContent = Files.readAllBytes(tmp2.toPath());
-                    strippedEntry.setSize(fileContent.length);
-                    zout.putArchiveEntry(strippedEntry);
-                    zout.write(fileContent);
-                    zout.closeArchiveEntry();
+                    stripEntry(zip, strippedEntry, rule, zout);
                 }
                 else
                 {
                     // Copy the Zip entry as-is
                     zout.addRawArchiveEntry(strippedEntry, zip.getRawInputStream(entry));
+                    StripReport.rawCopiedEntry();
                 }
             }
         }
     }
+
+    private void stripEntry(ZipFile zip, ZipArchiveEntry entry, Rule rule, ZipArchiveOutputStream zout)
+            throws IOException
+    {
+        final String name = entry.getName();
+        final Stripper stripper = rule.stripper;
+        final boolean nestedArchive = rule.nestedArchive;
+        final String cacheKey = nestedArchive ? nestedArchiveCacheKey(zip, entry) : null;
+        if (cacheKey != null)
+        {
+            final NestedArchiveCache.Entry cached = nestedArchiveCache.get(cacheKey);
+            if (cached != null)
+            {
+                StripStatistics.INSTANCE.cacheHit();
+                writeCompressed(entry, cached, zout);
+                StripReport.rawCopiedEntry();
+                return;
+            }
+            StripStatistics.INSTANCE.cacheMiss();
+        }
+        final String suffix = name.substring(name.lastIndexOf('.'));
+        // Unzip entry to temp file
+        final File tmp = TempWorkspace.createTempFile("tmp", suffix);
+        final File tmp2 = TempWorkspace.createTempFile("tmp", suffix);
+        try
+        {
+            try (StripEvents.Event buffering = StripEvents.INSTANCE.buffering(name, true);
+                    InputStream is = openEntry(zip, entry))
+            {
+                CopyBuffers.INSTANCE.copy(is, tmp.toPath());
+                buffering.end(entry.getCompressedSize(), tmp.length());
+            }
+            try (StripEvents.Event event = nestedArchive ? StripEvents.INSTANCE.nestedArchiveStrip(name)
+                    : StripEvents.INSTANCE.subStripper(name, stripper))
+            {
+                final long startNanos = System.nanoTime();
+                stripper.strip(tmp, tmp2);
+                StripReport.subStripper(stripper, startNanos, nestedArchive);
+                event.end(tmp.length(), tmp2.length());
+            }
+            StripReport.tempFile(tmp);
+            StripReport.tempFile(tmp2);
+            writeStripped(entry, tmp2, cacheKey, zout);
+        }
+        finally
+        {
+            TempWorkspace.delete(tmp);
+            TempWorkspace.delete(tmp2);
+        }
+        StripReport.recompressedEntry();
+    }
+
+    /**
+     * Opens the content of an entry, decompressing the deflated entries with the inflaters of the current thread
+     * instead of a new inflater for each entry.
+     */
+    private static InputStream openEntry(ZipFile zip, ZipArchiveEntry entry) throws IOException
+    {
+        return entry.getMethod() == ZipEntry.DEFLATED && zip.canReadEntryData(entry)
+                ? CompressionPool.inflate(zip.getRawInputStream(entry)) : zip.getInputStream(entry);
+    }
+
+    /**
+     * Computes the key of a nested archive in the cache.
+     * @return the key, or null if the cache is disabled or if the entry cannot be cached.
+     */
+    private String nestedArchiveCacheKey(ZipFile zip, ZipArchiveEntry entry) throws IOException
+    {
+        final boolean supportedMethod = entry.getMethod() == ZipEntry.STORED
+                || entry.getMethod() == ZipEntry.DEFLATED;
+        // The cached archives are copied as raw entries, which cannot keep a Zip64 extra field
+        final boolean zip64 = Arrays.stream(entry.getExtraFields())
+                .anyMatch(Zip64ExtendedInformationExtraField.class::isInstance);
+        return nestedArchiveCache != null && supportedMethod && !zip64
+                ? NestedArchiveCache.key(zip, entry, nestedArchiveFingerprint) : null;
+    }
+
+    private void writeStripped(ZipArchiveEntry entry, File stripped, String cacheKey, ZipArchiveOutputStream zout)
+            throws IOException
+    {
+        // The content and the compressed content are held in memory during the compression
+        final long reservation = 2 * stripped.length();
+        final MemoryBudget budget = MemoryBudget.current();
+        if (cacheKey != null && nestedArchiveCache.accepts(stripped.length())
+                && budget.tryReserve(reservation))
+        {
+            try
+            {
+                final NestedArchiveCache.Entry compressed =
+                        NestedArchiveCache.Entry.compress(stripped, entry.getMethod());
+                nestedArchiveCache.put(cacheKey, compressed);
+                writeCompressed(entry, compressed, zout);
+            }
+            finally
+            {
+                budget.release(reservation);
+            }
+        }
+        else
+        {
+            // Stream the stripped content, so that large entries are not held in memory
+            entry.setSize(stripped.length());
+            zout.putArchiveEntry(entry);
+            CopyBuffers.INSTANCE.copy(stripped.toPath(), zout);
+            zout.closeArchiveEntry();
+        }
+    }
+
+    private static void writeCompressed(ZipArchiveEntry entry, NestedArchiveCache.Entry compressed,
+            ZipArchiveOutputStream zout) throws IOException
+    {
+        compressed.apply(entry);
+        zout.addRawArchiveEntry(entry, new ByteArrayInputStream(compressed.getData()));
+    }
     
     private void fixAttributes(ZipArchiveEntry entry)
     {
@@ -189,17 +360,24 @@ public final class ZipStripper implements Stripper
         }
     }
     
-    private Stripper getSubFilter(String name)
+    private Rule getRule(String name)
     {
-        for (Entry<String, Stripper> filter : subFilters.entrySet())
+        for (Rule rule : rules)
         {
-            if (name.matches(filter.getKey()))
+            if (rule.filename.matcher(name).matches())
             {
-                return filter.getValue();
+                return rule;
             }
         }
         return null;
     }
+
+    private static boolean isArchiveStripper(Stripper stripper)
+    {
+        final Stripper actualStripper = stripper instanceof CachingStripper
+                ? ((CachingStripper) stripper).getStripper() : stripper;
+        return actualStripper instanceof ZipStripper || actualStripper instanceof DefaultZipStripper;
+    }
     
     private List<String> sortEntriesByName(Enumeration<ZipArchiveEntry> entries)
     {
@@ -230,4 +408,143 @@ public final class ZipStripper implements Stripper
         }
         return entry;
     }
+
+    /**
+     * Stripper of the files of the Zip matching a regular expression.
+     */
+    private static final class Rule
+    {
+        private final Pattern filename;
+        private final Stripper stripper;
+        private final boolean nestedArchive;
+
+        private Rule(String filename, Stripper stripper, boolean nestedArchive)
+        {
+            this.filename = Pattern.compile(filename);
+            this.stripper = stripper;
+            this.nestedArchive = nestedArchive;
+        }
+    }
+
+    /**
+     * Builder of ZipStripper.
+     * The ZipStripper objects are immutable, so that they can be shared by several threads
+     * and reused by several executions of the plugin.
+     */
+    public static final class Builder
+    {
+        private long zipTimestamp = DEFAULT_ZIP_TIMESTAMP;
+        private boolean fixZipExternalFileAttributes;
+        private final List<String> filenames = new ArrayList<>();
+        /** The strippers of the files (null for the nested archives stripped by the ZipStripper itself). */
+        private final List<Stripper> strippers = new ArrayList<>();
+        /** The number of default strippers, at the beginning of the lists. */
+        private int defaultStrippers;
+        private UnaryOperator<Stripper> nestedArchiveDecorator = UnaryOperator.identity();
+        private NestedArchiveCache nestedArchiveCache;
+        private String nestedArchiveFingerprint;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the date and time for zip archive entries (default: 2000-01-01 00:00:00).
+         * @param zipDateTime date and time for zip archive entries.
+         * @return this object (for method chaining).
+         */
+        public Builder zipDateTime(LocalDateTime zipDateTime)
+        {
+            this.zipTimestamp = zipDateTime.atZone(ZoneOffset.systemDefault()).toInstant().toEpochMilli();
+            return this;
+        }
+
+        /**
+         * Fixes the external file attributes of the zip archive entries.
+         * @param fix true to be insensitive to umask setting.
+         * @return this object (for method chaining).
+         */
+        public Builder fixZipExternalFileAttributes(boolean fix)
+        {
+            this.fixZipExternalFileAttributes = fix;
+            return this;
+        }
+
+        /**
+         * Adds a stripper for a given file in the Zip.
+         * When a file matches several strippers, the first one added is used.
+         * @param filename the name of the file in the Zip (regular expression).
+         * @param stripper the stripper to apply on the file.
+         * @return this object (for method chaining).
+         */
+        public Builder addFileStripper(String filename, Stripper stripper)
+        {
+            filenames.add(filename);
+            strippers.add(stripper);
+            return this;
+        }
+
+        /**
+         * Adds a default stripper for a given file in the Zip, which is used before the strippers added by
+         * {@link #addFileStripper(String, Stripper)} when a file matches both (e.g. a pattern of the user
+         * matching the manifest does not replace the manifest stripper).
+         * @param filename the name of the file in the Zip (regular expression).
+         * @param stripper the stripper to apply on the file.
+         * @return this object (for method chaining).
+         */
+        Builder addDefaultFileStripper(String filename, Stripper stripper)
+        {
+            filenames.add(defaultStrippers, filename);
+            strippers.add(defaultStrippers, stripper);
+            defaultStrippers++;
+            return this;
+        }
+
+        /**
+         * Strips the given nested archives (jars and zips nested in the Zip) with the built ZipStripper itself.
+         * @param filename the name of the nested archives in the Zip (regular expression).
+         * @return this object (for method chaining).
+         */
+        public Builder addNestedArchiveStripper(String filename)
+        {
+            filenames.add(filename);
+            strippers.add(null);
+            return this;
+        }
+
+        /**
+         * Decorates the stripper of the nested archives added by {@link #addNestedArchiveStripper(String)}.
+         * @param decorator the decorator, called with the built ZipStripper.
+         * @return this object (for method chaining).
+         */
+        Builder nestedArchiveDecorator(UnaryOperator<Stripper> decorator)
+        {
+            this.nestedArchiveDecorator = decorator;
+            return this;
+        }
+
+        /**
+         * Reuses the stripped nested archives from an in-memory cache.
+         * @param cache the cache.
+         * @param fingerprint the fingerprint of the configuration of the strippers of the nested archives:
+         *     all the parameters that have an effect on the stripped archives.
+         * @return this object (for method chaining).
+         */
+        Builder nestedArchiveCache(NestedArchiveCache cache, String fingerprint)
+        {
+            this.nestedArchiveCache = cache;
+            this.nestedArchiveFingerprint = fingerprint;
+            return this;
+        }
+
+        /**
+         * Builds the ZipStripper.
+         * The builder can be modified afterwards without modifying the built ZipStripper.
+         * @return the ZipStripper.
+         */
+        public ZipStripper build()
+        {
+            return new ZipStripper(this, false);
+        }
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits the events of the stripping of the artifacts with Java Flight Recorder.
+ * This class is only available with Java 11 or newer (cf. {@link StripEvents#load()}).
+ */
+final class StripEventsRecorder implements StripEvents
+{
+    private static final String CATEGORY = "Reproducible Build";
+    private static final String PREFIX = "io.github.zlika.reproducible.";
+
+    // The events are only allocated when they are enabled in a running recording
+    private static final EventType ARTIFACT_STRIP = EventType.getEventType(ArtifactStripEvent.class);
+    private static final EventType NESTED_ARCHIVE_STRIP = EventType.getEventType(NestedArchiveStripEvent.class);
+    private static final EventType SUB_STRIPPER = EventType.getEventType(SubStripperEvent.class);
+    private static final EventType BUFFERING = EventType.getEventType(BufferingEvent.class);
+
+    @Override
+    public Event artifactStrip(File artifact)
+    {
+        if (!ARTIFACT_STRIP.isEnabled())
+        {
+            return NO_EVENT;
+        }
+        final ArtifactStripEvent event = new ArtifactStripEvent();
+        event.artifact = artifact.getAbsolutePath();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Event nestedArchiveStrip(String entry)
+    {
+        if (!NESTED_ARCHIVE_STRIP.isEnabled())
+        {
+            return NO_EVENT;
+        }
+        final NestedArchiveStripEvent event = new NestedArchiveStripEvent();
+        event.entry = entry;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Event subStripper(String entry, Stripper stripper)
+    {
+        if (!SUB_STRIPPER.isEnabled())
+        {
+            return NO_EVENT;
+        }
+        final SubStripperEvent event = new SubStripperEvent();
+        event.entry = entry;
+        event.stripper = stripper.getClass().getSimpleName();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Event buffering(String name, boolean onDisk)
+    {
+        if (!BUFFERING.isEnabled())
+        {
+            return NO_EVENT;
+        }
+        final BufferingEvent event = new BufferingEvent();
+        event.name = name;
+        event.onDisk = onDisk;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Base class of the events, with the sizes of the data read and written.
+     */
+    @Category(CATEGORY)
+    abstract static class SizedEvent extends jdk.jfr.Event implements Event
+    {
+        /** Bytes read. */
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+
+        /** Bytes written. */
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+
+        @Override
+        public void end(long in, long out)
+        {
+            this.bytesIn = in;
+            this.bytesOut = out;
+            end();
+        }
+
+        @Override
+        public void close()
+        {
+            // Also ends the event if it has not been ended
+            commit();
+        }
+    }
+
+    /**
+     * Stripping of an artifact.
+     */
+    @Name(PREFIX + "ArtifactStrip")
+    @Label("Artifact Strip")
+    @Description("Stripping of an artifact of the build")
+    static final class ArtifactStripEvent extends SizedEvent
+    {
+        /** Path of the artifact. */
+        @Label("Artifact")
+        String artifact;
+    }
+
+    /**
+     * Stripping of an archive nested in another archive.
+     */
+    @Name(PREFIX + "NestedArchiveStrip")
+    @Label("Nested Archive Strip")
+    @Description("Stripping of an archive nested in another archive (e.g. a jar in a Spring Boot fat jar)")
+    static final class NestedArchiveStripEvent extends SizedEvent
+    {
+        /** Name of the entry of the nested archive. */
+        @Label("Entry")
+        String entry;
+    }
+
+    /**
+     * Stripping of an entry of an archive.
+     */
+    @Name(PREFIX + "SubStripper")
+    @Label("Sub-Stripper")
+    @Description("Stripping of an entry of an archive")
+    static final class SubStripperEvent extends SizedEvent
+    {
+        /** Name of the entry. */
+        @Label("Entry")
+        String entry;
+
+        /** Type of the stripper. */
+        @Label("Stripper")
+        String stripper;
+    }
+
+    /**
+     * Buffering of data in memory or in temporary files.
+     */
+    @Name(PREFIX + "Buffering")
+    @Label("Buffering")
+    @Description("Buffering of data in memory, or spilling in temporary files")
+    static final class BufferingEvent extends SizedEvent
+    {
+        /** Name of the buffered data. */
+        @Label("Name")
+        String name;
+
+        /** True if the data is spilled in temporary files. */
+        @Label("On Disk")
+        boolean onDisk;
+    }
+}
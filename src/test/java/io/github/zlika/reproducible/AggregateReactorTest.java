@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AggregateReactor}.
+ */
+public class AggregateReactorTest
+{
+    private final MavenProject moduleA = module("module-a");
+    private final MavenProject moduleB = module("module-b");
+    private final MavenProject moduleC = module("module-c");
+
+    /**
+     * Tests that the artifacts are stripped by the last expected module,
+     * and by the unexpected modules that come afterwards.
+     */
+    @Test
+    public void testLastModule()
+    {
+        final AggregateReactor reactor = new AggregateReactor();
+        Assert.assertNull(reactor.register(moduleA, this::expectedModules, m -> false, null, tasks("a.jar")));
+        Assert.assertEquals(Collections.singletonList(moduleB), reactor.getMissingModules());
+        final AggregateReactor.Batch batch = reactor.register(moduleB, this::expectedModules, m -> false, null,
+                tasks("b.jar"));
+        Assert.assertEquals(2, batch.getTasks().size());
+        Assert.assertTrue(reactor.getMissingModules().isEmpty());
+
+        Assert.assertEquals(1, reactor.register(moduleC, this::expectedModules, m -> false, null,
+                tasks("c.jar")).getTasks().size());
+        Assert.assertTrue(reactor.getMissingModules().isEmpty());
+    }
+
+    /**
+     * Tests that the modules that have finished their build are not waited for,
+     * and that the artifacts waiting for a missing module are reported.
+     */
+    @Test
+    public void testMissingModules()
+    {
+        final AggregateReactor reactor = new AggregateReactor();
+        Assert.assertNull(reactor.register(moduleA, () -> new LinkedHashSet<>(Arrays.asList(moduleA, moduleB,
+                moduleC)), m -> false, null, tasks("a.jar")));
+        // module-b has failed: module-c is the last module
+        Assert.assertEquals(1, reactor.register(moduleC, this::expectedModules, m -> m == moduleB, null,
+                Collections.emptyList()).getTasks().size());
+        Assert.assertEquals(Collections.emptyList(), reactor.getMissingModules());
+
+        final AggregateReactor other = new AggregateReactor();
+        Assert.assertNull(other.register(moduleA, this::expectedModules, m -> false, null, tasks("a.jar")));
+        Assert.assertEquals(Collections.singletonList(moduleB), other.getMissingModules());
+        Assert.assertEquals(Collections.singletonList(new File("a.jar").getAbsolutePath()),
+                other.getWaitingArtifacts());
+    }
+
+    private LinkedHashSet<MavenProject> expectedModules()
+    {
+        return new LinkedHashSet<>(Arrays.asList(moduleA, moduleB));
+    }
+
+    private static List<StripJarMojo.StripTask> tasks(String file)
+    {
+        return Collections.singletonList(new StripJarMojo.StripTask(null, new File(file), null));
+    }
+
+    private static MavenProject module(String artifactId)
+    {
+        final MavenProject module = new MavenProject();
+        module.setArtifactId(artifactId);
+        return module;
+    }
+}
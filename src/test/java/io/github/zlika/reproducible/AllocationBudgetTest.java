@@ -0,0 +1,252 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the number of bytes allocated by the strippers, so that a change that allocates
+ * memory for each entry of an archive or each line of a file (temporary files, copies of the content...)
+ * is detected.
+ * The allocations are measured with the allocation counters of the current thread.
+ * To ignore the fixed costs, the allocations for an input of size N are subtracted from
+ * the allocations for an input of size 2N.
+ * The budgets depend on the JIT and the tests are slow, so they are not run by default,
+ * but with the run-perf-its profile (e.g. "mvn test -Prun-perf-its").
+ */
+public class AllocationBudgetTest
+{
+    private static final int ZIP_ENTRIES = 500;
+    /** Bigger than the budgets, so that a copy of the content of an entry exceeds them. */
+    private static final int ZIP_ENTRY_SIZE = 64 * 1024;
+    private static final int ZIP_RAW_COPY_BUDGET_PER_ENTRY = 16 * 1024;
+    private static final int DEFAULT_ZIP_STRIPPER_BUDGET_PER_ENTRY = 40 * 1024;
+    private static final int TEXT_LINES = 1000;
+    private static final String TEXT_LINE = "Attribute-Name: value of the attribute 12345";
+    private static final int TEXT_FILE_BUDGET = 64 * 1024;
+    private static final int TEXT_WARMUP_RUNS = 50;
+    private static final int RUNS = 5;
+
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    /**
+     * Checks that the allocation counters are supported by the JVM.
+     */
+    @Before
+    public void setUp()
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Tests the allocations of the raw copy of the entries of a jar.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testZipStripperRawCopy() throws IOException
+    {
+        assertZipBudget(ZipStripper.builder().build(), ZIP_RAW_COPY_BUDGET_PER_ENTRY);
+    }
+
+    /**
+     * Tests the allocations of the raw copy of the entries of a jar,
+     * when they do not match any of the default sub-strippers.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testDefaultZipStripperRawCopy() throws IOException
+    {
+        assertZipBudget(new DefaultZipStripper(ZipStripper.builder(), Collections.emptyList()),
+                DEFAULT_ZIP_STRIPPER_BUDGET_PER_ENTRY);
+    }
+
+    /**
+     * Tests the allocations of {@link ManifestStripper}.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testManifestStripper() throws IOException
+    {
+        // The lines are kept in lists to be sorted: depending on the optimizations of the JIT compiler
+        // (for instance when the code is instrumented to measure the code coverage),
+        // the manifest stripper allocates between 17 and 25 copies of each line
+        assertTextBudget(new ManifestStripper(), 32, 2 * TEXT_FILE_BUDGET);
+    }
+
+    /**
+     * Tests the allocations of {@link PropertiesFileStripper}.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testPropertiesFileStripper() throws IOException
+    {
+        assertTextBudget(new PropertiesFileStripper("build.time"), 5, TEXT_FILE_BUDGET);
+    }
+
+    /**
+     * Tests the allocations of {@link MavenPluginToolsStripper}.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testMavenPluginToolsStripper() throws IOException
+    {
+        assertTextBudget(new MavenPluginToolsStripper(), 3.75, TEXT_FILE_BUDGET);
+    }
+
+    /**
+     * Tests the allocations of {@link LineEndingsStripper}.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testLineEndingsStripper() throws IOException
+    {
+        assertTextBudget(LineEndingsStripper.INSTANCE, 1.5, TEXT_FILE_BUDGET);
+    }
+
+    /**
+     * Tests the allocations of {@link LineNumberStripper}.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testLineNumberStripper() throws IOException
+    {
+        assertTextBudget(new LineNumberStripper(4, LineSeparators.LF), 1.5, TEXT_FILE_BUDGET);
+    }
+
+    private void assertZipBudget(Stripper stripper, int budgetPerEntry) throws IOException
+    {
+        final File jar = createJar(ZIP_ENTRIES);
+        final File largerJar = createJar(2 * ZIP_ENTRIES);
+        final File out = folder.newFile("stripped.jar");
+
+        final long perEntry = (allocatedBytes(() -> stripper.strip(largerJar, out))
+                - allocatedBytes(() -> stripper.strip(jar, out))) / ZIP_ENTRIES;
+        Assert.assertTrue("Allocated " + perEntry + " bytes per entry", perEntry <= budgetPerEntry);
+    }
+
+    /**
+     * Checks the allocations for each line, as a number of copies of the line
+     * (so that the budget does not depend on the representation of the strings in memory),
+     * and for each file.
+     */
+    private void assertTextBudget(StreamStripper stripper, double lineCopiesBudget, int fileBudget)
+            throws IOException
+    {
+        final byte[] text = createText(TEXT_LINES);
+        final byte[] largerText = createText(2 * TEXT_LINES);
+        final byte[] smallText = createText(1);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(largerText.length * 2);
+        final char[] line = TEXT_LINE.toCharArray();
+        final long lineCopy = allocatedBytes(() -> Assert.assertNotNull(new String(line)));
+        // Let the JIT compiler optimize the code (which can remove some allocations) before measuring
+        for (int i = 0; i < TEXT_WARMUP_RUNS; i++)
+        {
+            strip(stripper, largerText, out);
+        }
+
+        final long perLine = (allocatedBytes(() -> strip(stripper, largerText, out))
+                - allocatedBytes(() -> strip(stripper, text, out))) / TEXT_LINES;
+        Assert.assertTrue("Allocated " + perLine + " bytes per line, a copy of the line is " + lineCopy + " bytes",
+                perLine <= lineCopiesBudget * lineCopy);
+
+        final long perFile = allocatedBytes(() -> strip(stripper, smallText, out));
+        Assert.assertTrue("Allocated " + perFile + " bytes per file", perFile <= fileBudget);
+    }
+
+    private static void strip(StreamStripper stripper, byte[] content, ByteArrayOutputStream out)
+            throws IOException
+    {
+        out.reset();
+        stripper.strip(new ByteArrayInputStream(content), out);
+    }
+
+    /**
+     * Returns the minimum number of bytes allocated by the current thread during several runs of an action
+     * (the first runs also allocate memory for the loading of the classes).
+     */
+    private long allocatedBytes(IOAction action) throws IOException
+    {
+        final long threadId = Thread.currentThread().getId();
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++)
+        {
+            final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            action.run();
+            min = Math.min(min, threadMXBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return min;
+    }
+
+    private File createJar(int entries) throws IOException
+    {
+        final File jar = folder.newFile("test-" + entries + ".jar");
+        final Random random = new Random(entries);
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(jar))
+        {
+            for (int i = 0; i < entries; i++)
+            {
+                zout.putArchiveEntry(new ZipArchiveEntry("io/github/zlika/p" + i % 10 + "/Class" + i + ".class"));
+                final byte[] content = new byte[ZIP_ENTRY_SIZE];
+                random.nextBytes(content);
+                zout.write(content);
+                zout.closeArchiveEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static byte[] createText(int lines)
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+        {
+            builder.append(TEXT_LINE).append("\r\n");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An action that can throw an IOException.
+     */
+    private interface IOAction
+    {
+        void run() throws IOException;
+    }
+}
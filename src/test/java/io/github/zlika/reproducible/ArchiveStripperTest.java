@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
@@ -76,6 +77,38 @@ public class ArchiveStripperTest
         );
     }
 
+    /**
+     * Tests that the entries spilled in temporary files when the memory budget is exhausted
+     * give the same archive as the entries kept in memory.
+     *
+     * @throws IOException in case of error on test file operations
+     */
+    @Test
+    public void testStripTarWithoutMemoryBudget() throws IOException
+    {
+        final File original = new File(this.getClass().getResource("test-tar.tar").getFile());
+        final File inMemory = File.createTempFile("test-tar", ".tar");
+        inMemory.deleteOnExit();
+        final File onDisk = File.createTempFile("test-tar", ".tar");
+        onDisk.deleteOnExit();
+        final LocalDateTime dateTime = LocalDateTime.now();
+
+        new ArchiveStripper(dateTime).strip(original, inMemory);
+        final MemoryBudget budget = new MemoryBudget(0);
+        final MemoryBudget previous = MemoryBudget.bind(budget);
+        try
+        {
+            new ArchiveStripper(dateTime).strip(original, onDisk);
+        }
+        finally
+        {
+            MemoryBudget.bind(previous);
+        }
+
+        Assert.assertArrayEquals(Files.readAllBytes(inMemory.toPath()), Files.readAllBytes(onDisk.toPath()));
+        Assert.assertEquals(0, budget.getUsed());
+    }
+
     @Test
     public void testStripCpio() throws Exception
     {
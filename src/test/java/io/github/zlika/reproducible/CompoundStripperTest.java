@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompoundStripper}.
+ */
+public class CompoundStripperTest
+{
+    private static final String[] ATTRIBUTES =
+        { "Built-By", "Created-By", "Build-Jdk", "Build-Date", "Build-Time",
+        "Bnd-LastModified", "OpenIDE-Module-Build-Version" };
+
+    /**
+     * Tests that the stages are connected by in-memory buffers for small files.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testInMemoryPipeline() throws IOException
+    {
+        assertStripManifest(new CompoundStripper(createAttributesStripper(), new SortManifestFileStripper()));
+    }
+
+    /**
+     * Tests that the stages are connected by pipes for large files.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testPipedPipeline() throws IOException
+    {
+        assertStripManifest(new CompoundStripper(0, createAttributesStripper(), new SortManifestFileStripper()));
+    }
+
+    /**
+     * Tests the stream API for large inputs.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testPipedStreamPipeline() throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new FileInputStream(getResource("MANIFEST.MF")))
+        {
+            new CompoundStripper(16, createAttributesStripper(), new SortManifestFileStripper()).strip(in, out);
+        }
+        Assert.assertArrayEquals(Files.readAllBytes(getResource("MANIFEST-stripped.MF").toPath()),
+                out.toByteArray());
+    }
+
+    /**
+     * Tests that temporary files are used when a stripper cannot process streams.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testTempFilesPipeline() throws IOException
+    {
+        final Stripper fileStripper = (in, out) -> createAttributesStripper().strip(in, out);
+        assertStripManifest(new CompoundStripper(fileStripper, new SortManifestFileStripper()));
+    }
+
+    /**
+     * Tests that the failure of a stage of a pipe is reported, rather than the failure of the next stage
+     * reading a truncated input.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testPipedPipelineUpstreamFailure() throws IOException
+    {
+        final StreamStripper upstream = (in, out) ->
+        {
+            out.write(new byte[100]);
+            throw new IOException("upstream");
+        };
+        final StreamStripper downstream = (in, out) ->
+        {
+            while (in.read() != -1)
+            {
+                out.write(0);
+            }
+            throw new IOException("downstream");
+        };
+        assertPipelineFailure(new CompoundStripper(0, upstream, downstream), "upstream", "downstream");
+    }
+
+    /**
+     * Tests that the failure of a stage of a pipe is reported, rather than the failure of the previous stage
+     * writing in a closed pipe.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testPipedPipelineDownstreamFailure() throws IOException
+    {
+        final StreamStripper upstream = (in, out) ->
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                out.write(new byte[64 * 1024]);
+            }
+        };
+        final StreamStripper downstream = (in, out) ->
+        {
+            throw new IOException("downstream");
+        };
+        assertPipelineFailure(new CompoundStripper(0, upstream, downstream), "downstream", "Pipe closed");
+    }
+
+    private void assertPipelineFailure(Stripper stripper, String cause, String suppressed) throws IOException
+    {
+        final File out = File.createTempFile("pipeline", null);
+        out.deleteOnExit();
+        try
+        {
+            stripper.strip(getResource("MANIFEST.MF"), out);
+            Assert.fail("The pipeline should fail");
+        }
+        catch (IOException e)
+        {
+            Assert.assertEquals(cause, e.getMessage());
+            Assert.assertEquals(1, e.getSuppressed().length);
+            Assert.assertEquals(suppressed, e.getSuppressed()[0].getMessage());
+        }
+        out.delete();
+    }
+
+    private void assertStripManifest(Stripper stripper) throws IOException
+    {
+        final File out = File.createTempFile("manifest", null);
+        out.deleteOnExit();
+
+        stripper.strip(getResource("MANIFEST.MF"), out);
+
+        final byte[] expected = Files.readAllBytes(getResource("MANIFEST-stripped.MF").toPath());
+        Assert.assertArrayEquals(expected, Files.readAllBytes(out.toPath()));
+        out.delete();
+    }
+
+    private TextFileStripper createAttributesStripper()
+    {
+        final TextFileStripper stripper = new TextFileStripper();
+        for (String attribute : ATTRIBUTES)
+        {
+            stripper.addPredicate(s -> s.startsWith(attribute + ":"));
+        }
+        return stripper;
+    }
+
+    private File getResource(String name)
+    {
+        return new File(this.getClass().getResource(name).getFile());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.Deflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompressionPool}.
+ */
+public class CompressionPoolTest
+{
+    private static final byte[] CONTENT = String.join("\n", Collections.nCopies(10000,
+            "Some text compressed by the pooled deflaters")).getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Tests that a reused deflater compresses the data as a new one.
+     */
+    @Test
+    public void testDeflaterReuse()
+    {
+        final Deflater fresh = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final byte[] expected = deflate(fresh);
+        fresh.end();
+
+        final Deflater first = CompressionPool.acquireDeflater();
+        deflate(first);
+        CompressionPool.release(first);
+        final Deflater second = CompressionPool.acquireDeflater();
+        Assert.assertSame(first, second);
+        Assert.assertArrayEquals(expected, deflate(second));
+        CompressionPool.release(second);
+    }
+
+    /**
+     * Tests that the streams decompressing deflated data reuse the inflaters of the thread.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testInflate() throws IOException
+    {
+        final Deflater deflater = CompressionPool.acquireDeflater();
+        final byte[] compressed = deflate(deflater);
+        CompressionPool.release(deflater);
+        for (int i = 0; i < 3; i++)
+        {
+            try (InputStream is = CompressionPool.inflate(new ByteArrayInputStream(compressed)))
+            {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[1000];
+                int n;
+                while ((n = is.read(buffer)) != -1)
+                {
+                    out.write(buffer, 0, n);
+                }
+                Assert.assertArrayEquals(CONTENT, out.toByteArray());
+            }
+        }
+    }
+
+    private static byte[] deflate(Deflater deflater)
+    {
+        deflater.setInput(CONTENT);
+        deflater.finish();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        while (!deflater.finished())
+        {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConcurrencyGovernor}.
+ */
+public class ConcurrencyGovernorTest
+{
+    /**
+     * Tests that the CPU and I/O permits are limited independently, and released once.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testSeparateLimits() throws IOException
+    {
+        final ConcurrencyGovernor governor = new ConcurrencyGovernor(1, 2);
+        final ConcurrencyGovernor.Permit cpu = governor.cpu();
+        try (ConcurrencyGovernor.Permit io1 = governor.io(); ConcurrencyGovernor.Permit io2 = governor.io())
+        {
+            Assert.assertEquals(1, governor.getCpuUsed());
+            Assert.assertEquals(2, governor.getIoUsed());
+        }
+        Assert.assertEquals(0, governor.getIoUsed());
+        cpu.close();
+        cpu.close();
+        Assert.assertEquals(0, governor.getCpuUsed());
+    }
+
+    /**
+     * Tests that a task waits until a permit is released.
+     * @throws IOException On error.
+     * @throws InterruptedException On error.
+     * @throws ExecutionException On error.
+     * @throws TimeoutException On error.
+     */
+    @Test
+    public void testAcquireWaits() throws IOException, InterruptedException, ExecutionException, TimeoutException
+    {
+        final ConcurrencyGovernor governor = new ConcurrencyGovernor(1, 1);
+        final ConcurrencyGovernor.Permit first = governor.cpu();
+        final CompletableFuture<ConcurrencyGovernor.Permit> second = acquireCpu(governor);
+        assertWaiting(second);
+        first.close();
+        second.get(10, TimeUnit.SECONDS).close();
+        Assert.assertEquals(0, governor.getCpuUsed());
+    }
+
+    /**
+     * Tests that the permits of the helper threads are only acquired if they are available.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testTryAcquire() throws IOException
+    {
+        final ConcurrencyGovernor governor = new ConcurrencyGovernor(3, 1);
+        final ConcurrencyGovernor.Permit permit = governor.cpu();
+        final ConcurrencyGovernor.Permit helpers = governor.tryCpu(5);
+        Assert.assertEquals(2, helpers.getCount());
+        Assert.assertEquals(0, governor.tryCpu(1).getCount());
+        helpers.close();
+        Assert.assertEquals(1, governor.getCpuUsed());
+        permit.close();
+        Assert.assertEquals(0, governor.getCpuUsed());
+    }
+
+    /**
+     * Tests that the tasks of the helper threads use the governor of the thread that submitted them.
+     * @throws Exception On error.
+     */
+    @Test
+    public void testBound() throws Exception
+    {
+        final ConcurrencyGovernor governor = new ConcurrencyGovernor(1, 1);
+        final ConcurrencyGovernor previous = ConcurrencyGovernor.bind(governor);
+        try
+        {
+            Assert.assertSame(governor, ConcurrencyGovernor.current());
+            Assert.assertSame(governor, governor.getExecutor()
+                    .submit(governor.bound(ConcurrencyGovernor::current)).get(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            ConcurrencyGovernor.bind(previous);
+        }
+        Assert.assertNotSame(governor, ConcurrencyGovernor.current());
+        // The helper thread is unbound once its task is finished
+        Assert.assertNotSame(governor, governor.getExecutor().submit(ConcurrencyGovernor::current)
+                .get(10, TimeUnit.SECONDS));
+    }
+
+    private static CompletableFuture<ConcurrencyGovernor.Permit> acquireCpu(ConcurrencyGovernor governor)
+    {
+        return CompletableFuture.supplyAsync(() ->
+        {
+            try
+            {
+                return governor.cpu();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void assertWaiting(CompletableFuture<?> future) throws InterruptedException, ExecutionException
+    {
+        try
+        {
+            future.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("The task should wait for a permit");
+        }
+        catch (TimeoutException e)
+        {
+            // Expected
+        }
+    }
+}
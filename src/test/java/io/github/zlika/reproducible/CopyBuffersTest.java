@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link CopyBuffers}.
+ */
+public class CopyBuffersTest
+{
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = new byte[100_000];
+
+    /**
+     * Constructor.
+     */
+    public CopyBuffersTest()
+    {
+        new Random(0).nextBytes(content);
+    }
+
+    /**
+     * Tests the copies of streams and files, with buffers smaller than the data.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testCopy() throws IOException
+    {
+        final CopyBuffers buffers = new CopyBuffers();
+        buffers.configure(4096, false);
+        final Path file = folder.newFile().toPath();
+        Assert.assertEquals(content.length, buffers.copy(new ByteArrayInputStream(content), file));
+        Assert.assertArrayEquals(content, Files.readAllBytes(file));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(content.length, buffers.copy(file, out));
+        Assert.assertArrayEquals(content, out.toByteArray());
+    }
+
+    /**
+     * Tests the copies of the end of a file, with heap and direct buffers.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testCopyFromPosition() throws IOException
+    {
+        final CopyBuffers buffers = new CopyBuffers();
+        final Path source = folder.newFile().toPath();
+        Files.write(source, content);
+        final byte[] expected = Arrays.copyOfRange(content, 1000, content.length);
+        for (final boolean direct : new boolean[] { false, true })
+        {
+            buffers.configure(4096, direct);
+            final Path target = folder.newFile().toPath();
+            // The target is truncated
+            Files.write(target, new byte[content.length]);
+            Assert.assertEquals(expected.length, buffers.copy(source, 1000, target));
+            Assert.assertArrayEquals(expected, Files.readAllBytes(target));
+        }
+    }
+
+    /**
+     * Tests that the buffers are reused until their size is changed.
+     */
+    @Test
+    public void testReuse()
+    {
+        final CopyBuffers buffers = new CopyBuffers();
+        buffers.configure(1024, false);
+        final byte[] buffer = buffers.acquire();
+        Assert.assertEquals(1024, buffer.length);
+        buffers.release(buffer);
+        Assert.assertSame(buffer, buffers.acquire());
+        buffers.release(buffer);
+        buffers.configure(2048, false);
+        final byte[] larger = buffers.acquire();
+        Assert.assertEquals(2048, larger.length);
+        // The buffers of the previous size are not pooled anymore
+        buffers.release(buffer);
+        Assert.assertNotSame(buffer, buffers.acquire());
+    }
+}
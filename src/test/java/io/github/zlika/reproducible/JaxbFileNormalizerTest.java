@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link JaxbFileNormalizer}.
+ */
+public class JaxbFileNormalizerTest
+{
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that sorting the methods and removing the timestamp in one pass
+     * gives the same result as running the strippers one after the other.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testNormalizeObjectFactory() throws IOException
+    {
+        final Path file = copyResource("ObjectFactory.java", "ObjectFactory.java");
+        final File expected = folder.newFile();
+        new LineNumberStripper(4, LineSeparators.CRLF).strip(getResource("ObjectFactory-fixed.java"), expected);
+
+        Assert.assertEquals(JaxbFileNormalizer.Result.NORMALIZED, createNormalizer().normalize(file));
+        Assert.assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(file));
+    }
+
+    /**
+     * Tests that a file already normalized is not written again.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testAlreadyNormalizedFileIsNotWritten() throws IOException
+    {
+        final Path file = copyResource("ObjectFactory.java", "ObjectFactory.java");
+        final JaxbFileNormalizer normalizer = createNormalizer().setRemoveJaxbTimestamps(false);
+        Assert.assertEquals(JaxbFileNormalizer.Result.NORMALIZED, normalizer.normalize(file));
+        Assert.assertArrayEquals(Files.readAllBytes(getResource("ObjectFactory-fixed.java").toPath()),
+                Files.readAllBytes(file));
+
+        final FileTime lastModifiedTime = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, lastModifiedTime);
+        Assert.assertEquals(JaxbFileNormalizer.Result.UNCHANGED, normalizer.normalize(file));
+        Assert.assertEquals(lastModifiedTime, Files.getLastModifiedTime(file));
+    }
+
+    /**
+     * Tests that the timestamp is removed without holding the file in memory when the memory budget is exhausted.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testNormalizeWithoutMemoryBudget() throws IOException
+    {
+        final Path file = copyResource("ObjectFactory.java", "Types.java");
+        final File expected = folder.newFile();
+        new LineNumberStripper(4, LineSeparators.CRLF).strip(getResource("ObjectFactory.java"), expected);
+
+        final MemoryBudget budget = new MemoryBudget(0);
+        final MemoryBudget previous = MemoryBudget.bind(budget);
+        try
+        {
+            Assert.assertEquals(JaxbFileNormalizer.Result.NORMALIZED, createNormalizer().normalize(file));
+            Assert.assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(file));
+        }
+        finally
+        {
+            MemoryBudget.bind(previous);
+        }
+        Assert.assertEquals(0, budget.getPeak());
+    }
+
+    /**
+     * Tests that the manifest records the hash of the normalized content, and no hash for an ignored file.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testNormalizeWithManifest() throws IOException
+    {
+        final Path file = copyResource("ObjectFactory.java", "ObjectFactory.java");
+        final Path ignored = copyResource("WrongObjectFactory.java", "Wrong.java");
+        final Path manifestFile = folder.getRoot().toPath().resolve("manifest.lst");
+        final ProcessedFilesManifest manifest =
+                ProcessedFilesManifest.load(manifestFile, folder.getRoot().toPath(), "");
+        final JaxbFileNormalizer normalizer = createNormalizer();
+        Assert.assertEquals(JaxbFileNormalizer.Result.NORMALIZED,
+                normalizer.normalize(file, Files.readAttributes(file, BasicFileAttributes.class), manifest));
+        Assert.assertEquals(JaxbFileNormalizer.Result.IGNORED,
+                normalizer.normalize(ignored, Files.readAttributes(ignored, BasicFileAttributes.class), manifest));
+        manifest.save();
+
+        // Touched files: the content of the normalized file is compared with its hash
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        Files.setLastModifiedTime(ignored, FileTime.fromMillis(0));
+        final ProcessedFilesManifest reloaded =
+                ProcessedFilesManifest.load(manifestFile, folder.getRoot().toPath(), "");
+        Assert.assertTrue(reloaded.isUpToDate(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        Assert.assertFalse(reloaded.isUpToDate(ignored, Files.readAttributes(ignored, BasicFileAttributes.class)));
+    }
+
+    /**
+     * Tests that a file not generated by xjc is ignored.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testIgnoreNonJaxbFile() throws IOException
+    {
+        final Path file = copyResource("WrongObjectFactory.java", "ObjectFactory.java");
+        Assert.assertEquals(JaxbFileNormalizer.Result.IGNORED, createNormalizer().normalize(file));
+        Assert.assertArrayEquals(Files.readAllBytes(getResource("WrongObjectFactory.java").toPath()),
+                Files.readAllBytes(file));
+    }
+
+    private JaxbFileNormalizer createNormalizer()
+    {
+        return new JaxbFileNormalizer(
+                Collections.singletonList(StripJaxbMojo.XjcGenerator.COM_SUN_XML_BIND.getMatchingCommentText()),
+                StandardCharsets.UTF_8, LineSeparators.CRLF);
+    }
+
+    private Path copyResource(String name, String targetName) throws IOException
+    {
+        final Path target = folder.getRoot().toPath().resolve(targetName);
+        Files.copy(getResource(name).toPath(), target);
+        return target;
+    }
+
+    private File getResource(String name)
+    {
+        return new File(this.getClass().getResource(name).getFile());
+    }
+}
@@ -18,7 +18,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -98,4 +101,38 @@ public class JaxbObjectFactoryFixerTest
         Assert.assertArrayEquals(expected, actual);
         out.delete();
     }
+
+    /**
+     * Tests that the methods of a large ObjectFactory are sorted
+     * in the alphabetical order of their whole text.
+     */
+    @Test
+    public void testLargeObjectFactory()
+    {
+        final String header = "//\n"
+                + "// Generated by the JavaTM Architecture for XML Binding (JAXB) Reference Implementation\n"
+                + "//\n\npublic class ObjectFactory {\n\n    public ObjectFactory() {\n    }";
+        final String footer = "\n\n}\n";
+        final List<String> methods = new ArrayList<>();
+        final Random random = new Random(0);
+        for (int i = 0; i < 5000; i++)
+        {
+            final String type = "Type" + random.nextInt(2000);
+            methods.add("\n\n    /**\n     * Create an instance of {@link " + type + " }\n     * \n     */\n"
+                    + "    public " + type + " create" + type + (i % 2 == 0 ? "()" : "(" + type + " value)")
+                    + " {\n        return new " + type + "();\n    }");
+        }
+        // Methods with the same text must be kept
+        methods.add(methods.get(0));
+        Collections.shuffle(methods, random);
+
+        final StringBuilder expected = new StringBuilder(header);
+        methods.stream().sorted().forEach(expected::append);
+        expected.append(footer);
+
+        final JaxbObjectFactoryFixer fixer = new JaxbObjectFactoryFixer(
+                Collections.singletonList(StripJaxbMojo.XjcGenerator.COM_SUN_XML_BIND.getMatchingCommentText()),
+                StandardCharsets.UTF_8);
+        Assert.assertEquals(expected.toString(), fixer.fix(header + String.join("", methods) + footer));
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MemoryBudget}.
+ */
+public class MemoryBudgetTest
+{
+    /**
+     * Tests the parsing of the budget.
+     */
+    @Test
+    public void testParseSize()
+    {
+        Assert.assertEquals(1000, MemoryBudget.parseSize("1000"));
+        Assert.assertEquals(512 * 1024, MemoryBudget.parseSize("512k"));
+        Assert.assertEquals(64 * 1024 * 1024, MemoryBudget.parseSize(" 64M "));
+        Assert.assertEquals(2L * 1024 * 1024 * 1024, MemoryBudget.parseSize("2g"));
+    }
+
+    /**
+     * Tests that an invalid budget is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidSize()
+    {
+        MemoryBudget.parseSize("64MB");
+    }
+
+    /**
+     * Tests that a blank size is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseBlankSize()
+    {
+        MemoryBudget.parseSize(" ");
+    }
+
+    /**
+     * Tests that a missing size is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseNullSize()
+    {
+        MemoryBudget.parseSize(null);
+    }
+
+    /**
+     * Tests that a size that does not fit in a long is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseOverflowingSize()
+    {
+        MemoryBudget.parseSize("9999999999g");
+    }
+
+    /**
+     * Tests that the memory is not reserved above the budget, and the peak of the reserved memory.
+     */
+    @Test
+    public void testTryReserve()
+    {
+        final MemoryBudget budget = new MemoryBudget(100);
+        Assert.assertTrue(budget.tryReserve(60));
+        Assert.assertFalse(budget.tryReserve(50));
+        Assert.assertTrue(budget.tryReserve(40));
+        budget.release(60);
+        budget.release(40);
+        Assert.assertEquals(0, budget.getUsed());
+        Assert.assertEquals(100, budget.getPeak());
+    }
+
+    /**
+     * Tests that the scopes of the executions share the budget of the session, and have their own peak.
+     */
+    @Test
+    public void testScopes()
+    {
+        final MemoryBudget session = new MemoryBudget(100);
+        final MemoryBudget first = session.newScope();
+        final MemoryBudget second = session.newScope();
+        Assert.assertTrue(first.tryReserve(60));
+        Assert.assertFalse(second.tryReserve(50));
+        Assert.assertTrue(second.tryReserve(40));
+        Assert.assertEquals(100, session.getUsed());
+        first.release(60);
+        second.release(40);
+        Assert.assertEquals(0, session.getUsed());
+        Assert.assertEquals(100, session.getPeak());
+        Assert.assertEquals(60, first.getPeak());
+        Assert.assertEquals(40, second.getPeak());
+    }
+
+    /**
+     * Tests that a reservation above the budget waits until the memory is released.
+     * @throws IOException On error.
+     * @throws InterruptedException On error.
+     * @throws ExecutionException On error.
+     * @throws TimeoutException On error.
+     */
+    @Test
+    public void testReserveWaits() throws IOException, InterruptedException, ExecutionException, TimeoutException
+    {
+        final MemoryBudget budget = new MemoryBudget(100);
+        budget.reserve(80);
+        final CompletableFuture<Void> waiting = CompletableFuture.runAsync(() ->
+        {
+            try
+            {
+                // More than the budget: only granted when nothing else is reserved
+                budget.reserve(150);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+        try
+        {
+            waiting.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("The reservation should wait for the memory to be released");
+        }
+        catch (TimeoutException e)
+        {
+            // Expected
+        }
+        budget.release(80);
+        waiting.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(150, budget.getUsed());
+        Assert.assertEquals(150, budget.getPeak());
+    }
+}
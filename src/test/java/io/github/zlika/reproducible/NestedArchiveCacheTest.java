@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link NestedArchiveCache}.
+ */
+public class NestedArchiveCacheTest
+{
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the nested archives copied from the cache are identical to the stripped ones,
+     * for deflated and stored entries, and that the entries with a Zip64 extra field are not cached.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testStripNestedArchives() throws IOException
+    {
+        final byte[] nestedJar = Files.readAllBytes(
+                new File(getClass().getResource("test-jar.jar").getFile()).toPath());
+        final File jar = folder.newFile("test.jar");
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(jar))
+        {
+            addEntry(zout, "lib/a.jar", nestedJar, ZipEntry.DEFLATED);
+            addEntry(zout, "lib/b.jar", nestedJar, ZipEntry.STORED);
+            addEntry(zout, "lib/c.jar", nestedJar, ZipEntry.DEFLATED);
+            // Without the size, a Zip64 extra field is added
+            final ZipArchiveEntry zip64Entry = new ZipArchiveEntry("lib/d.jar");
+            zout.putArchiveEntry(zip64Entry);
+            zout.write(nestedJar);
+            zout.closeArchiveEntry();
+        }
+        final NestedArchiveCache cache = new NestedArchiveCache(NestedArchiveCache.DEFAULT_MAX_SIZE);
+        final long hits = StripStatistics.INSTANCE.getCacheHits();
+
+        final byte[] expected = strip(jar, null);
+        Assert.assertArrayEquals(expected, strip(jar, cache));
+        // lib/c.jar is identical to lib/a.jar
+        Assert.assertEquals(hits + 1, StripStatistics.INSTANCE.getCacheHits());
+        Assert.assertArrayEquals(expected, strip(jar, cache));
+        Assert.assertEquals(hits + 4, StripStatistics.INSTANCE.getCacheHits());
+    }
+
+    /**
+     * Tests that the same archive nested with different extensions is cached separately,
+     * as the file attributes are only fixed in the jars.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testExtensionInKey() throws IOException
+    {
+        final byte[] nestedJar = Files.readAllBytes(
+                new File(getClass().getResource("test-jar.jar").getFile()).toPath());
+        final File jar = folder.newFile("extensions.jar");
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(jar))
+        {
+            addEntry(zout, "lib/x.jar", nestedJar, ZipEntry.DEFLATED);
+            addEntry(zout, "lib/x.zip", nestedJar, ZipEntry.DEFLATED);
+        }
+        final NestedArchiveCache cache = new NestedArchiveCache(NestedArchiveCache.DEFAULT_MAX_SIZE);
+        final long hits = StripStatistics.INSTANCE.getCacheHits();
+        final ZipStripper.Builder builder = ZipStripper.builder().fixZipExternalFileAttributes(true)
+                .addNestedArchiveStripper("lib/.*");
+        final File expected = folder.newFile();
+        builder.build().strip(jar, expected);
+        final File cached = folder.newFile();
+        builder.nestedArchiveCache(cache, "config").build().strip(jar, cached);
+
+        Assert.assertEquals(hits, StripStatistics.INSTANCE.getCacheHits());
+        Assert.assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(cached.toPath()));
+    }
+
+    /**
+     * Tests the eviction of the least recently used archives.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testEvict() throws IOException
+    {
+        final File file = folder.newFile("file.jar");
+        Files.write(file.toPath(), new byte[100]);
+        final NestedArchiveCache cache = new NestedArchiveCache(250);
+        cache.put("a", NestedArchiveCache.Entry.compress(file, ZipEntry.STORED));
+        cache.put("b", NestedArchiveCache.Entry.compress(file, ZipEntry.STORED));
+        Assert.assertNotNull(cache.get("a"));
+        cache.put("c", NestedArchiveCache.Entry.compress(file, ZipEntry.STORED));
+
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertFalse(cache.accepts(100));
+    }
+
+    private byte[] strip(File jar, NestedArchiveCache cache) throws IOException
+    {
+        final ZipStripper.Builder builder = ZipStripper.builder().addNestedArchiveStripper("lib/.*\\.jar");
+        if (cache != null)
+        {
+            builder.nestedArchiveCache(cache, "config");
+        }
+        final File out = folder.newFile();
+        new DefaultZipStripper(builder, Collections.emptyList()).strip(jar, out);
+        return Files.readAllBytes(out.toPath());
+    }
+
+    private static void addEntry(ZipArchiveOutputStream zout, String name, byte[] content, int method)
+            throws IOException
+    {
+        final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(method);
+        entry.setSize(content.length);
+        if (method == ZipEntry.STORED)
+        {
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setCrc(crc.getValue());
+        }
+        zout.putArchiveEntry(entry);
+        zout.write(content);
+        zout.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ProcessedFilesManifest}.
+ */
+public class ProcessedFilesManifestTest
+{
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path baseDirectory;
+    private Path manifestFile;
+    private Path file;
+
+    /**
+     * Creates a file and a manifest where the file is recorded.
+     * @throws IOException On error.
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        baseDirectory = folder.newFolder("generated").toPath();
+        manifestFile = folder.getRoot().toPath().resolve("state/manifest.lst");
+        file = Files.createDirectories(baseDirectory.resolve("a/b")).resolve("File.java");
+        Files.write(file, "content".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+
+        final ProcessedFilesManifest manifest = ProcessedFilesManifest.load(manifestFile, baseDirectory, "config");
+        Assert.assertFalse(manifest.isUpToDate(file, attributes(file)));
+        manifest.add(file, DigestUtils.sha256Hex("content"));
+        manifest.save();
+    }
+
+    /**
+     * Tests that a file not modified since it was recorded is up-to-date.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testUnmodifiedFileIsUpToDate() throws IOException
+    {
+        Assert.assertTrue(load("config").isUpToDate(file, attributes(file)));
+    }
+
+    /**
+     * Tests that a file is not up-to-date if it is modified.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testModifiedFileIsNotUpToDate() throws IOException
+    {
+        Files.write(file, "CONTENT".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000000));
+        Assert.assertFalse(load("config").isUpToDate(file, attributes(file)));
+    }
+
+    /**
+     * Tests that a file that has only been touched is still up-to-date.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testTouchedFileIsUpToDate() throws IOException
+    {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000000));
+        final ProcessedFilesManifest manifest = load("config");
+        Assert.assertTrue(manifest.isUpToDate(file, attributes(file)));
+        manifest.save();
+        Assert.assertTrue(load("config").isUpToDate(file, attributes(file)));
+    }
+
+    /**
+     * Tests that a file modified just before the manifest was saved is checked by its content,
+     * as its modification time may not have changed.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testRecentlyModifiedFileContentIsChecked() throws IOException
+    {
+        Files.setLastModifiedTime(manifestFile, FileTime.fromMillis(1000500));
+        Files.write(file, "CONTENT".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+        Assert.assertFalse(load("config").isUpToDate(file, attributes(file)));
+    }
+
+    /**
+     * Tests that the timestamps with a sub-second precision are trusted when they are older
+     * than the resolution of the clock of the system.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testPreciseTimestampIsTrusted() throws IOException
+    {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000123));
+        final ProcessedFilesManifest manifest = load("config");
+        Assert.assertTrue(manifest.isUpToDate(file, attributes(file)));
+        manifest.save();
+        Files.setLastModifiedTime(manifestFile, FileTime.fromMillis(1000500));
+        // Same size and same modification time: the content is not checked
+        Files.write(file, "CONTENT".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000123));
+        Assert.assertTrue(load("config").isUpToDate(file, attributes(file)));
+    }
+
+    /**
+     * Tests that an ignored file is recorded without its hash, and checked again once touched.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testIgnoredFile() throws IOException
+    {
+        final Path ignored = baseDirectory.resolve("Ignored.java");
+        Files.write(ignored, "ignored".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(ignored, FileTime.fromMillis(1000000));
+        final ProcessedFilesManifest manifest = load("config");
+        Assert.assertFalse(manifest.isUpToDate(ignored, attributes(ignored)));
+        manifest.addIgnored(ignored, attributes(ignored));
+        manifest.save();
+
+        Assert.assertTrue(load("config").isUpToDate(ignored, attributes(ignored)));
+        Files.setLastModifiedTime(ignored, FileTime.fromMillis(2000000));
+        Assert.assertFalse(load("config").isUpToDate(ignored, attributes(ignored)));
+    }
+
+    /**
+     * Tests that all files must be processed again if the configuration has changed.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testConfigurationChange() throws IOException
+    {
+        Assert.assertFalse(load("other config").isUpToDate(file, attributes(file)));
+    }
+
+    /**
+     * Tests that a corrupted manifest is ignored.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testCorruptedManifest() throws IOException
+    {
+        Files.write(manifestFile, "config\nfoo\tbar\n".getBytes(StandardCharsets.UTF_8));
+        Assert.assertFalse(load("config").isUpToDate(file, attributes(file)));
+    }
+
+    private ProcessedFilesManifest load(String fingerprint)
+    {
+        return ProcessedFilesManifest.load(manifestFile, baseDirectory, fingerprint);
+    }
+
+    private static BasicFileAttributes attributes(Path path) throws IOException
+    {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+}
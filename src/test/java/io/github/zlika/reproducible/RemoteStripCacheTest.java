@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link RemoteStripCache}, with a local HTTP server.
+ */
+public class RemoteStripCacheTest
+{
+    private static final DefaultLog LOG = new DefaultLog(new ConsoleLogger());
+
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int failureStatus;
+    private HttpServer server;
+    private String url;
+
+    /**
+     * Starts the HTTP server, storing the uploaded files in memory.
+     * @throws IOException On error.
+     */
+    @Before
+    public void startServer() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cache/", this::handle);
+        server.start();
+        url = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort()
+                + "/cache";
+    }
+
+    /**
+     * Stops the HTTP server.
+     */
+    @After
+    public void stopServer()
+    {
+        server.stop(0);
+    }
+
+    /**
+     * Tests that a file stripped on a machine is reused on another machine.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testSharedCache() throws IOException
+    {
+        final AtomicInteger strips = new AtomicInteger();
+        final Stripper upperCase = (in, out) ->
+        {
+            strips.incrementAndGet();
+            Files.write(out.toPath(), new String(Files.readAllBytes(in.toPath()), StandardCharsets.UTF_8)
+                    .toUpperCase().getBytes(StandardCharsets.UTF_8));
+        };
+        final File in = folder.newFile("in.txt");
+        Files.write(in.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+
+        // The CI agent uploads the stripped file
+        new CachingStripper(null, new RemoteStripCache(url, 1000, true, LOG), "config", upperCase)
+            .strip(in, folder.newFile("out1.txt"));
+        // The stripped file and its digest
+        Assert.assertEquals(2, entries.size());
+        // Another machine, with an empty local cache, downloads it
+        final StripCache localCache = new StripCache(folder.getRoot().toPath().resolve("cache"), 1024 * 1024);
+        final File out2 = folder.newFile("out2.txt");
+        new CachingStripper(localCache, new RemoteStripCache(url, 1000, false, LOG), "config", upperCase)
+            .strip(in, out2);
+        Assert.assertEquals(1, strips.get());
+        Assert.assertEquals("ABC", new String(Files.readAllBytes(out2.toPath()), StandardCharsets.UTF_8));
+        // The downloaded file is also stored in the local cache
+        requests.set(0);
+        new CachingStripper(localCache, new RemoteStripCache(url, 1000, false, LOG), "config", upperCase)
+            .strip(in, folder.newFile("out3.txt"));
+        Assert.assertEquals(0, requests.get());
+        Assert.assertEquals(1, strips.get());
+    }
+
+    /**
+     * Tests that a missing file is reported as such.
+     */
+    @Test
+    public void testMiss()
+    {
+        final RemoteStripCache cache = new RemoteStripCache(url, 1000, true, LOG);
+        Assert.assertFalse(cache.get("0123", new File(folder.getRoot(), "out.txt")));
+        Assert.assertEquals(1, requests.get());
+    }
+
+    /**
+     * Tests that the truncated or corrupted files, and the files without digest, are handled as misses.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testInvalidFile() throws IOException
+    {
+        final RemoteStripCache cache = new RemoteStripCache(url, 1000, true, LOG);
+        final File file = folder.newFile("file.txt");
+        Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+        cache.put("0123", file);
+        final File out = new File(folder.getRoot(), "out.txt");
+        Assert.assertTrue(cache.get("0123", out));
+        Assert.assertEquals("content", new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8));
+        Assert.assertTrue(out.delete());
+
+        for (String content : new String[] { "conten", "CONTENT" })
+        {
+            entries.put("0123", content.getBytes(StandardCharsets.UTF_8));
+            Assert.assertFalse(cache.get("0123", out));
+            Assert.assertFalse(out.exists());
+        }
+        entries.put("0123", "content".getBytes(StandardCharsets.UTF_8));
+        entries.remove("0123.sha256");
+        Assert.assertFalse(cache.get("0123", out));
+        // No temporary file is left
+        Assert.assertArrayEquals(new String[] { "file.txt" }, folder.getRoot().list());
+    }
+
+    /**
+     * Tests that the server is not contacted anymore after several failures.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testCircuitBreaker() throws IOException
+    {
+        failureStatus = 500;
+        final RemoteStripCache cache = new RemoteStripCache(url, 1000, true, LOG);
+        final File file = folder.newFile("file.txt");
+        for (int i = 0; i < 5; i++)
+        {
+            Assert.assertFalse(cache.get("0123", file));
+            cache.put("0123", file);
+        }
+        Assert.assertEquals(3, requests.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        requests.incrementAndGet();
+        final String key = exchange.getRequestURI().getPath().substring("/cache/".length());
+        try (InputStream is = exchange.getRequestBody(); OutputStream os = exchange.getResponseBody())
+        {
+            if (failureStatus != 0)
+            {
+                exchange.sendResponseHeaders(failureStatus, -1);
+            }
+            else if ("PUT".equals(exchange.getRequestMethod()))
+            {
+                final ByteArrayOutputStream content = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1)
+                {
+                    content.write(buffer, 0, read);
+                }
+                entries.put(key, content.toByteArray());
+                exchange.sendResponseHeaders(201, -1);
+            }
+            else if (entries.containsKey(key))
+            {
+                exchange.sendResponseHeaders(200, entries.get(key).length);
+                os.write(entries.get(key));
+            }
+            else
+            {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        }
+    }
+}
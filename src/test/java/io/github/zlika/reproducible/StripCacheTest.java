@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link StripCache} and {@link CachingStripper}.
+ */
+public class StripCacheTest
+{
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that a file is only stripped once for a given configuration.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testCachingStripper() throws IOException
+    {
+        final StripCache cache = new StripCache(folder.getRoot().toPath().resolve("cache"), 1024 * 1024);
+        final AtomicInteger strips = new AtomicInteger();
+        final Stripper upperCase = (in, out) ->
+        {
+            strips.incrementAndGet();
+            Files.write(out.toPath(), new String(Files.readAllBytes(in.toPath()), StandardCharsets.UTF_8)
+                    .toUpperCase().getBytes(StandardCharsets.UTF_8));
+        };
+        final File in = newFile("in.txt", "abc");
+        final long hits = StripStatistics.INSTANCE.getCacheHits();
+
+        final File out1 = folder.newFile("out1.txt");
+        new CachingStripper(cache, null, "config1", upperCase).strip(in, out1);
+        final File out2 = folder.newFile("out2.txt");
+        new CachingStripper(cache, null, "config1", upperCase).strip(newFile("in2.txt", "abc"), out2);
+        Assert.assertEquals(1, strips.get());
+        Assert.assertEquals(hits + 1, StripStatistics.INSTANCE.getCacheHits());
+        Assert.assertEquals("ABC", new String(Files.readAllBytes(out2.toPath()), StandardCharsets.UTF_8));
+
+        // Another configuration, or another content, gives another key
+        new CachingStripper(cache, null, "config2", upperCase).strip(in, folder.newFile("out3.txt"));
+        new CachingStripper(cache, null, "config1", upperCase)
+            .strip(newFile("in3.txt", "abcd"), folder.newFile("out4.txt"));
+        Assert.assertEquals(3, strips.get());
+    }
+
+    /**
+     * Tests the eviction of the least recently used files.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testEvict() throws IOException
+    {
+        final StripCache cache = new StripCache(folder.getRoot().toPath().resolve("cache"), 25);
+        final File file = newFile("file.txt", "0123456789");
+        final String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = StripCache.key(file, "config" + i);
+            cache.put(keys[i], file);
+        }
+        // The first file is the most recently used one
+        for (int i = 0; i < keys.length; i++)
+        {
+            Files.setLastModifiedTime(folder.getRoot().toPath().resolve("cache").resolve(keys[i].substring(0, 2))
+                    .resolve(keys[i]), FileTime.fromMillis(1000000L * (keys.length - i)));
+        }
+
+        cache.evict();
+
+        Assert.assertTrue(cache.get(keys[0], folder.newFile("out0.txt")));
+        Assert.assertTrue(cache.get(keys[1], folder.newFile("out1.txt")));
+        Assert.assertFalse(cache.get(keys[2], folder.newFile("out2.txt")));
+    }
+
+    private File newFile(String name, String content) throws IOException
+    {
+        final File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
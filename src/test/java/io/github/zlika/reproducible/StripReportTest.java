@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link StripReport}.
+ */
+public class StripReportTest
+{
+    private static final byte[] MANIFEST =
+            "Manifest-Version: 1.0\r\nBuilt-By: test\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the statistics of the stripping of a jar containing a nested jar.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testNestedJar() throws IOException
+    {
+        final ByteArrayOutputStream nestedJar = new ByteArrayOutputStream();
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(nestedJar))
+        {
+            addEntry(zout, "META-INF/MANIFEST.MF", MANIFEST);
+            addEntry(zout, "Nested.class", new byte[100]);
+        }
+        final File jar = folder.newFile("test.jar");
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(jar))
+        {
+            addEntry(zout, "META-INF/MANIFEST.MF", MANIFEST);
+            addEntry(zout, "Main.class", new byte[100]);
+            addEntry(zout, "lib/nested.jar", nestedJar.toByteArray());
+        }
+        final DefaultZipStripper stripper = new DefaultZipStripper(
+                ZipStripper.builder().addNestedArchiveStripper("lib/.*\\.jar"), Collections.emptyList());
+        final File out = folder.newFile("test-stripped.jar");
+
+        final StripReport report = StripReport.start(jar);
+        stripper.strip(jar, out);
+        report.finish(out);
+
+        Assert.assertEquals(jar.length(), report.getBytesIn());
+        Assert.assertEquals(out.length(), report.getBytesOut());
+        Assert.assertEquals(5, report.getEntries());
+        Assert.assertEquals(2, report.getRawCopiedEntries());
+        Assert.assertEquals(3, report.getRecompressedEntries());
+        Assert.assertEquals(Arrays.asList("ManifestStripper", "ZipStripper"),
+                Arrays.asList(report.getSubStripperNanos().keySet().toArray()));
+        Assert.assertTrue(report.getNestedArchiveNanos() > 0);
+        Assert.assertTrue(report.getNestedArchiveNanos() <= report.getWallTimeNanos());
+        Assert.assertTrue(report.getTempDiskBytes() >= 2 * nestedJar.size());
+
+        // The statistics are not recorded once the report is finished
+        stripper.strip(jar, out);
+        Assert.assertEquals(5, report.getEntries());
+    }
+
+    /**
+     * Tests the JSON file and the summary table.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testOutput() throws IOException
+    {
+        final File tar = folder.newFile("a \"quoted\" name.tar");
+        Files.write(tar.toPath(), new byte[1024]);
+        final StripReport report = StripReport.start(tar);
+        StripReport.recompressedEntry();
+        report.finish(tar);
+        final File json = new File(folder.getRoot(), "report/strip-jar-report.json");
+
+        StripReport.writeJson(Collections.singletonList(report), json);
+
+        final String content = new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(content.contains("\"artifact\": \""
+                + tar.getAbsolutePath().replace("\\", "\\\\").replace("\"", "\\\"") + "\""));
+        Assert.assertTrue(content.contains("\"bytesIn\": 1024,"));
+        Assert.assertTrue(content.contains("\"recompressedEntries\": 1,"));
+        Assert.assertTrue(content.contains("\"subStripperTimeMs\": {}"));
+        final List<String> table = StripReport.summaryTable(Collections.singletonList(report));
+        Assert.assertEquals(2, table.size());
+        Assert.assertTrue(table.get(1).startsWith("a \"quoted\" name.tar "));
+    }
+
+    private static void addEntry(ZipArchiveOutputStream zout, String name, byte[] content) throws IOException
+    {
+        zout.putArchiveEntry(new ZipArchiveEntry(name));
+        zout.write(content);
+        zout.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link StripStatistics}.
+ */
+public class StripStatisticsTest
+{
+    /**
+     * Tests the statistics through the MBean registered in the platform MBean server.
+     * The statistics are cumulative, so only their increase is checked.
+     * @throws JMException On error.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testMBean() throws JMException, IOException
+    {
+        // The MBean is registered when the class is initialized
+        Assert.assertNotNull(StripStatistics.INSTANCE);
+        final StripStatisticsMXBean mbean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(StripStatistics.OBJECT_NAME), StripStatisticsMXBean.class);
+        final long artifacts = mbean.getArtifactsStripped();
+        final long bytes = mbean.getBytesProcessed();
+        final long tempFiles = mbean.getTempFilesCreated();
+        final long outstandingTempFiles = mbean.getTempFilesOutstanding();
+        final long[] histogram = mbean.getLatencyHistograms()
+                .getOrDefault(StripStatistics.ARTIFACT, new long[mbean.getLatencyBucketsMillis().length + 1]);
+
+        StripStatistics.INSTANCE.artifactStripped(1000, TimeUnit.MILLISECONDS.toNanos(50));
+        StripStatistics.INSTANCE.artifactStripped(500, TimeUnit.SECONDS.toNanos(20));
+        StripStatistics.INSTANCE.tempFileCreated();
+        StripStatistics.INSTANCE.tempFileDeleted();
+        // A stripper whose stages are connected by temporary files
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Stripper copy = (in, o) -> Files.copy(in.toPath(), o.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        new CompoundStripper(LineEndingsStripper.INSTANCE, copy)
+            .strip(new ByteArrayInputStream("a\nb\n".getBytes(StandardCharsets.UTF_8)), out);
+
+        Assert.assertEquals(artifacts + 2, mbean.getArtifactsStripped());
+        Assert.assertEquals(bytes + 1500, mbean.getBytesProcessed());
+        Assert.assertEquals(tempFiles + 5, mbean.getTempFilesCreated());
+        Assert.assertEquals(outstandingTempFiles, mbean.getTempFilesOutstanding());
+        final long[] newHistogram = mbean.getLatencyHistograms().get(StripStatistics.ARTIFACT);
+        Assert.assertArrayEquals(new long[] { 1, 10, 100, 1000, 10000 }, mbean.getLatencyBucketsMillis());
+        Assert.assertEquals(histogram[2] + 1, newHistogram[2]);
+        Assert.assertEquals(histogram[5] + 1, newHistogram[5]);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link TempWorkspace}.
+ */
+public class TempWorkspaceTest
+{
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the temporary files are created in the workspace,
+     * and that the workspace is deleted with its content when it is closed.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testWorkspace() throws IOException
+    {
+        final File parent = new File(folder.getRoot(), "tmp");
+        final Path directory;
+        try (TempWorkspace workspace = TempWorkspace.open(parent))
+        {
+            // The directory is only created when needed
+            Assert.assertFalse(parent.exists());
+            directory = workspace.getDirectory();
+            Assert.assertEquals(parent.toPath(), directory.getParent());
+            final File file = TempWorkspace.createTempFile("tmp", ".jar");
+            Assert.assertEquals(directory, file.getParentFile().toPath());
+            TempWorkspace.delete(file);
+            Assert.assertFalse(file.exists());
+            // A temporary file left behind (e.g. by a failed stripper)
+            final Path dir = TempWorkspace.createTempDirectory("tmp-");
+            Files.write(dir.resolve("leftover.txt"), new byte[] { 1 });
+            Assert.assertEquals(directory, dir.getParent());
+        }
+        Assert.assertFalse(Files.exists(directory));
+        Assert.assertTrue(parent.isDirectory());
+
+        // Outside of a workspace, the default temporary directory is used
+        final File file = TempWorkspace.createTempFile("tmp", null);
+        Assert.assertNotEquals(directory, file.getParentFile().toPath());
+        TempWorkspace.delete(file);
+    }
+}
@@ -14,9 +14,18 @@
 
 package io.github.zlika.reproducible;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipFile;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -41,12 +50,129 @@ public class ZipStripperTest
         outFile.deleteOnExit();
         final File expected = new File(this.getClass().getResource(strippedJarName).getFile());
         
-        new ZipStripper()
+        ZipStripper.builder()
             .addFileStripper("META-INF/MANIFEST.MF", new ManifestStripper())
             .addFileStripper("META-INF/\\S*/pom.properties", new PropertiesFileStripper())
+            .build()
             .strip(inFile, outFile);
 
         Assert.assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(outFile.toPath()));
         outFile.delete();
     }
+
+    /**
+     * Tests the deprecated constructor, whose stripper of a file can be replaced.
+     * @throws IOException 
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedConstructor() throws IOException
+    {
+        final File inFile = new File(this.getClass().getResource("test-jar.jar").getFile());
+        final File outFile = File.createTempFile("test-jar", null);
+        outFile.deleteOnExit();
+        final File expected = new File(this.getClass().getResource("test-jar-stripped.jar").getFile());
+
+        new ZipStripper()
+            .addFileStripper("META-INF/MANIFEST.MF", LineEndingsStripper.INSTANCE)
+            .addFileStripper("META-INF/\\S*/pom.properties", new PropertiesFileStripper())
+            .addFileStripper("META-INF/MANIFEST.MF", new ManifestStripper())
+            .strip(inFile, outFile);
+
+        Assert.assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(outFile.toPath()));
+        outFile.delete();
+    }
+
+    /**
+     * Tests that the default strippers are used before a stripper of the user matching the same files.
+     * @throws IOException 
+     */
+    @Test
+    public void testDefaultStrippersFirst() throws IOException
+    {
+        final File inFile = new File(this.getClass().getResource("test-jar.jar").getFile());
+        final File outFile = File.createTempFile("test-jar", null);
+        outFile.deleteOnExit();
+        final File expected = new File(this.getClass().getResource("test-jar-stripped.jar").getFile());
+
+        new DefaultZipStripper(ZipStripper.builder().addFileStripper(".*\\.MF", LineEndingsStripper.INSTANCE),
+                Collections.emptyList()).strip(inFile, outFile);
+
+        Assert.assertArrayEquals(readEntry(expected, "META-INF/MANIFEST.MF"),
+                readEntry(outFile, "META-INF/MANIFEST.MF"));
+        outFile.delete();
+    }
+
+    /**
+     * Tests that a ZipStripper created by a builder cannot be modified.
+     */
+    @Test(expected = IllegalStateException.class)
+    @SuppressWarnings("deprecation")
+    public void testImmutable()
+    {
+        ZipStripper.builder().build().addFileStripper("META-INF/MANIFEST.MF", new ManifestStripper());
+    }
+
+    /**
+     * Tests that a ZipStripper can be used by several threads, and that it is not modified by its builder.
+     * @throws Exception 
+     */
+    @Test
+    public void testConcurrentStrip() throws Exception
+    {
+        final File inFile = new File(this.getClass().getResource("test-jar.jar").getFile());
+        final byte[] expected = Files.readAllBytes(
+                new File(this.getClass().getResource("test-jar-stripped.jar").getFile()).toPath());
+        final ZipStripper.Builder builder = ZipStripper.builder()
+            .addFileStripper("META-INF/MANIFEST.MF", new ManifestStripper())
+            .addFileStripper("META-INF/\\S*/pom.properties", new PropertiesFileStripper());
+        final ZipStripper zipStripper = builder.build();
+        builder.addFileStripper(".*", LineEndingsStripper.INSTANCE);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            final List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+            {
+                results.add(executor.submit(() ->
+                {
+                    final File outFile = File.createTempFile("test-jar", null);
+                    try
+                    {
+                        zipStripper.strip(inFile, outFile);
+                        return Files.readAllBytes(outFile.toPath());
+                    }
+                    finally
+                    {
+                        outFile.delete();
+                    }
+                }));
+            }
+            for (Future<byte[]> result : results)
+            {
+                Assert.assertArrayEquals(expected, result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] readEntry(File zip, String name) throws IOException
+    {
+        try (ZipFile zipFile = new ZipFile(zip);
+                InputStream is = zipFile.getInputStream(zipFile.getEntry(name)))
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int n;
+            while ((n = is.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
 }
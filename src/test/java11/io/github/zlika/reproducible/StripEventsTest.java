@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.zlika.reproducible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Unit tests for {@link StripEvents} (only run with Java 11 or newer).
+ */
+public class StripEventsTest
+{
+    private static final String PREFIX = "io.github.zlika.reproducible.";
+
+    /** Temporary folder. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the events emitted during the stripping of a jar containing a nested jar.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testEvents() throws IOException
+    {
+        Assert.assertEquals("StripEventsRecorder", StripEvents.INSTANCE.getClass().getSimpleName());
+        final ByteArrayOutputStream nestedJar = new ByteArrayOutputStream();
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(nestedJar))
+        {
+            addEntry(zout, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        final File jar = folder.newFile("test.jar");
+        try (ZipArchiveOutputStream zout = new ZipArchiveOutputStream(jar))
+        {
+            addEntry(zout, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            addEntry(zout, "lib/nested.jar", nestedJar.toByteArray());
+        }
+        final DefaultZipStripper stripper = new DefaultZipStripper(
+                ZipStripper.builder().addNestedArchiveStripper("lib/.*\\.jar"), Collections.emptyList());
+        final Path recordingFile = folder.getRoot().toPath().resolve("recording.jfr");
+
+        try (Recording recording = new Recording())
+        {
+            recording.enable(PREFIX + "SubStripper");
+            recording.enable(PREFIX + "NestedArchiveStrip");
+            recording.enable(PREFIX + "Buffering");
+            recording.start();
+            stripper.strip(jar, folder.newFile("test-stripped.jar"));
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        final List<RecordedEvent> subStrippers = filter(events, "SubStripper");
+        Assert.assertEquals(2, subStrippers.size());
+        for (RecordedEvent event : subStrippers)
+        {
+            Assert.assertEquals("META-INF/MANIFEST.MF", event.getString("entry"));
+            Assert.assertEquals("ManifestStripper", event.getString("stripper"));
+        }
+        final List<RecordedEvent> nestedArchives = filter(events, "NestedArchiveStrip");
+        Assert.assertEquals(1, nestedArchives.size());
+        Assert.assertEquals("lib/nested.jar", nestedArchives.get(0).getString("entry"));
+        Assert.assertEquals(nestedJar.size(), nestedArchives.get(0).getLong("bytesIn"));
+        // The entries are extracted in temporary files, and the manifests are stripped in memory
+        final List<RecordedEvent> buffering = filter(events, "Buffering");
+        Assert.assertEquals(3, buffering.stream().filter(e -> e.getBoolean("onDisk")).count());
+        Assert.assertEquals(2, buffering.stream().filter(e -> !e.getBoolean("onDisk")).count());
+    }
+
+    /**
+     * Tests that the events are not allocated without a recording,
+     * and that an event is emitted when the stripping fails.
+     * @throws IOException On error.
+     */
+    @Test
+    public void testFailureAndDisabledEvents() throws IOException
+    {
+        Assert.assertSame(StripEvents.NO_EVENT, StripEvents.INSTANCE.subStripper("entry", new ManifestStripper()));
+        final Path recordingFile = folder.getRoot().toPath().resolve("recording.jfr");
+        try (Recording recording = new Recording())
+        {
+            recording.enable(PREFIX + "SubStripper");
+            recording.start();
+            try (StripEvents.Event event = StripEvents.INSTANCE.subStripper("entry", new ManifestStripper()))
+            {
+                Assert.assertNotSame(StripEvents.NO_EVENT, event);
+                throw new IOException("Stripping failure");
+            }
+            catch (IOException e)
+            {
+                // Expected
+            }
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        final List<RecordedEvent> events = filter(RecordingFile.readAllEvents(recordingFile), "SubStripper");
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("entry", events.get(0).getString("entry"));
+        Assert.assertEquals(0, events.get(0).getLong("bytesOut"));
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name)
+    {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(PREFIX + name))
+                .collect(Collectors.toList());
+    }
+
+    private static void addEntry(ZipArchiveOutputStream zout, String name, byte[] content) throws IOException
+    {
+        zout.putArchiveEntry(new ZipArchiveEntry(name));
+        zout.write(content);
+        zout.closeArchiveEntry();
+    }
+}